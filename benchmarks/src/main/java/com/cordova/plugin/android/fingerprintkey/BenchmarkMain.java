@@ -0,0 +1,33 @@
+package com.cordova.plugin.android.fingerprintkey;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the benchmarks through the JMH command line, writing the results as JSON to
+ * jmh-result.json unless a result format or file is given, so runs from different releases
+ * can be compared.
+ */
+public final class BenchmarkMain {
+
+    private static final String RESULT_FILE = "jmh-result.json";
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> jmhArgs = new ArrayList<String>();
+        List<String> given = Arrays.asList(args);
+        if (!given.contains("-rf")) {
+            jmhArgs.add("-rf");
+            jmhArgs.add("json");
+        }
+        if (!given.contains("-rff")) {
+            jmhArgs.add("-rff");
+            jmhArgs.add(RESULT_FILE);
+        }
+        jmhArgs.addAll(given);
+        org.openjdk.jmh.Main.main(jmhArgs.toArray(new String[0]));
+    }
+}
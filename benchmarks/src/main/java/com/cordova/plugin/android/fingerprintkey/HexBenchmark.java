@@ -0,0 +1,70 @@
+package com.cordova.plugin.android.fingerprintkey;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hex encoding of seeds, done once per returned key, against the StringBuffer encoder the
+ * plugin used before {@link Hex}. Run with -prof gc for the allocation rates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HexBenchmark {
+
+    // 32 is the size of an HMAC-SHA256 seed
+    @Param({"32", "256"})
+    int size;
+
+    private byte[] bytes;
+    private String hex;
+
+    @Setup
+    public void setUp() {
+        bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        hex = Hex.encode(bytes);
+    }
+
+    @Benchmark
+    public String encode() {
+        return Hex.encode(bytes);
+    }
+
+    @Benchmark
+    public String encodeLegacy() {
+        return legacyEncode(bytes);
+    }
+
+    @Benchmark
+    public byte[] decode() {
+        return Hex.decode(hex);
+    }
+
+    // FingerprintScanner.byteArrayToHex before it used Hex
+    private static String legacyEncode(byte[] ba) {
+        StringBuffer sb = new StringBuffer(ba.length * 2);
+        String hexNumber;
+        for (int x = 0; x < ba.length; x++) {
+            hexNumber = "0" + Integer.toHexString(0xff & ba[x]);
+
+            sb.append(hexNumber.substring(hexNumber.length() - 2));
+        }
+        return sb.toString();
+    }
+}
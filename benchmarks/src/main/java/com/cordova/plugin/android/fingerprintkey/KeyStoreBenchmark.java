@@ -0,0 +1,86 @@
+package com.cordova.plugin.android.fingerprintkey;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.security.KeyStore;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.PBEParameterSpec;
+
+/**
+ * A fetch's keystore part, getKey, Mac.init and the HMAC, with the key store loaded for
+ * every fetch (cold) or kept by {@link KeyStoreHolder} (warm). A PKCS12 key store loaded
+ * from memory stands in for AndroidKeyStore, so the numbers show the cost of the load
+ * relative to the rest, not the binder round-trip itself.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KeyStoreBenchmark {
+
+    private static final String KEY_ID = "testKey";
+    private static final char[] PASSWORD = "benchmark".toCharArray();
+
+    private KeyStoreHolder holder;
+    private byte[] keyIdBytes;
+
+    @Setup
+    public void setUp() throws Exception {
+        KeyGenerator keyGen = KeyGenerator.getInstance(SeedDerivation.ALGORITHM);
+        SecretKey key = keyGen.generateKey();
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        keyStore.load(null, null);
+        // a single PBE iteration for the entry, AndroidKeyStore does not unwrap keys in-process
+        KeyStore.PasswordProtection protection = new KeyStore.PasswordProtection(PASSWORD,
+                "PBEWithHmacSHA256AndAES_128", new PBEParameterSpec(new byte[16], 1));
+        keyStore.setEntry(KEY_ID, new KeyStore.SecretKeyEntry(key), protection);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        keyStore.store(out, PASSWORD);
+        final byte[] stored = out.toByteArray();
+
+        holder = new KeyStoreHolder(new KeyStoreHolder.Provider() {
+            @Override
+            public KeyStore load() throws Exception {
+                KeyStore keyStore = KeyStore.getInstance("PKCS12");
+                keyStore.load(new ByteArrayInputStream(stored), PASSWORD);
+                return keyStore;
+            }
+        });
+        keyIdBytes = KEY_ID.getBytes("UTF-8");
+    }
+
+    @Benchmark
+    public byte[] coldFetch() throws Exception {
+        holder.invalidate();
+        return fetch();
+    }
+
+    @Benchmark
+    public byte[] warmFetch() throws Exception {
+        return fetch();
+    }
+
+    private byte[] fetch() throws Exception {
+        SecretKey key = (SecretKey) holder.get().getKey(KEY_ID, PASSWORD);
+        Mac mac = Mac.getInstance(SeedDerivation.ALGORITHM);
+        mac.init(key);
+        return mac.doFinal(keyIdBytes);
+    }
+}
@@ -0,0 +1,69 @@
+package com.cordova.plugin.android.fingerprintkey;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolving the dialog texts of a call: a locale registered once and referred to by
+ * "localeId", against an inline "locale" bundle. Both start from the arguments as the bridge
+ * delivers them, a JSON string, so the larger payload of the inline bundle is included.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LocaleBenchmark {
+
+    private LocaleRegistry registry;
+    private String byIdArgs;
+    private String inlineArgs;
+
+    @Setup
+    public void setUp() throws JSONException {
+        JSONObject locale = new JSONObject();
+        locale.put("title", "Fingerprint");
+        locale.put("cancel", "Cancel");
+        locale.put("desc", "Confirm fingerprint to continue");
+        locale.put("hint", "Touch sensor");
+        locale.put("notrecognized", "Fingerprint not recognized. Try again");
+        locale.put("success", "Fingerprint recognized");
+        locale.put("toomanytries", "Too many attempts. Try again later");
+
+        registry = new LocaleRegistry();
+        registry.register("en", locale);
+
+        JSONObject args = new JSONObject();
+        args.put("keyId", "testKey");
+        args.put("localeId", "en");
+        byIdArgs = args.toString();
+
+        args = new JSONObject();
+        args.put("keyId", "testKey");
+        args.put("locale", locale);
+        inlineArgs = args.toString();
+    }
+
+    @Benchmark
+    public DialogLocale resolveById() throws JSONException {
+        return registry.resolve(new JSONObject(byIdArgs));
+    }
+
+    @Benchmark
+    public DialogLocale parseInline() throws JSONException {
+        return registry.resolve(new JSONObject(inlineArgs));
+    }
+}
@@ -0,0 +1,39 @@
+package com.cordova.plugin.android.fingerprintkey;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The bookkeeping every request pays for: recording a phase timing and writing a trace
+ * entry. Run with several threads since both are written from the crypto executor, the UI
+ * thread and the bridge at once.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+
+    @Benchmark
+    public void recordPhase() {
+        Metrics.record(Metrics.REQUEST, 1500000L);
+    }
+
+    @Benchmark
+    public void writeTrace() {
+        TraceLog.write(TraceLog.RESULT_OK, "testKey", 0, 1, 1500000L);
+    }
+}
@@ -0,0 +1,71 @@
+package com.cordova.plugin.android.fingerprintkey;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the result of a fetch the way FingerprintKey's ResultCallback does, as JSON or in
+ * the binary format, and serializing it as the bridge does before handing it to JS: JSON as
+ * text, an ArrayBuffer as Base64.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResultBenchmark {
+
+    private byte[] seed;
+
+    @Setup
+    public void setUp() {
+        seed = new byte[32];
+        new Random(42).nextBytes(seed);
+    }
+
+    @Benchmark
+    public String successResult() throws JSONException {
+        JSONObject resultJson = new JSONObject();
+        resultJson.put("status", "ok");
+        resultJson.put("key", Hex.encode(seed));
+        resultJson.put("path", "scan");
+        resultJson.put("elapsed", 1234L);
+        return resultJson.toString();
+    }
+
+    @Benchmark
+    public String errorResult() throws JSONException {
+        JSONObject resultJson = new JSONObject();
+        resultJson.put("status", "error");
+        resultJson.put("error", -314);
+        resultJson.put("attempts", 3);
+        resultJson.put("path", "scan");
+        resultJson.put("elapsed", 1234L);
+        return resultJson.toString();
+    }
+
+    @Benchmark
+    public String binarySuccessResult() {
+        return Base64.getEncoder().encodeToString(BinaryResult.encode(BinaryResult.STATUS_OK, 0, 0, seed));
+    }
+
+    @Benchmark
+    public String binaryErrorResult() {
+        return Base64.getEncoder().encodeToString(BinaryResult.encode(BinaryResult.STATUS_ERROR, -314, 3, null));
+    }
+}
@@ -0,0 +1,58 @@
+package com.cordova.plugin.android.fingerprintkey;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The fetchkeys derivation loop: one HMAC per label under the master seed, each encoded as
+ * hex for the result.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SeedDerivationBenchmark {
+
+    @Param({"1", "8", "32"})
+    int labelCount;
+
+    private byte[] master;
+    private String[] labels;
+
+    @Setup
+    public void setUp() {
+        master = new byte[32];
+        new Random(42).nextBytes(master);
+        labels = new String[labelCount];
+        for (int i = 0; i < labelCount; i++) {
+            labels[i] = "account" + i;
+        }
+    }
+
+    @Benchmark
+    public Map<String, String> deriveSeeds() throws IOException {
+        // derive wipes the master seed it is given
+        Map<String, String> seeds = new LinkedHashMap<String, String>();
+        for (Map.Entry<String, byte[]> entry : SeedDerivation.derive(master.clone(), labels).entrySet()) {
+            seeds.put(entry.getKey(), Hex.encode(entry.getValue()));
+        }
+        return seeds;
+    }
+}
@@ -0,0 +1,174 @@
+package com.cordova.plugin.android.fingerprintkey;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * The lock dialog's countdown driven by a fake main looper: ticks stop on pause and dismiss,
+ * resume from the original deadline after a configuration change, and nothing is left
+ * scheduled across many lock/cancel cycles.
+ */
+public class CountdownTest {
+
+    /**
+     * A single-threaded scheduler with a clock that only moves when told to.
+     */
+    private static class FakeScheduler implements Countdown.Scheduler {
+        long now = 1000000L;
+        final List<Runnable> runnables = new ArrayList<Runnable>();
+        final List<Long> dueTimes = new ArrayList<Long>();
+
+        @Override
+        public long now() {
+            return now;
+        }
+
+        @Override
+        public void postDelayed(Runnable runnable, long delayMillis) {
+            runnables.add(runnable);
+            dueTimes.add(now + delayMillis);
+        }
+
+        @Override
+        public void cancel(Runnable runnable) {
+            for (int i = runnables.size() - 1; i >= 0; i--) {
+                if (runnables.get(i) == runnable) {
+                    runnables.remove(i);
+                    dueTimes.remove(i);
+                }
+            }
+        }
+
+        int pending() {
+            return runnables.size();
+        }
+
+        void advance(long millis) {
+            long until = now + millis;
+            while (true) {
+                int next = -1;
+                for (int i = 0; i < dueTimes.size(); i++) {
+                    if (dueTimes.get(i) <= until && (next < 0 || dueTimes.get(i) < dueTimes.get(next))) {
+                        next = i;
+                    }
+                }
+                if (next < 0) {
+                    break;
+                }
+                now = dueTimes.remove(next);
+                runnables.remove(next).run();
+            }
+            now = until;
+        }
+    }
+
+    private static class RecordingListener implements Countdown.Listener {
+        final List<Long> ticks = new ArrayList<Long>();
+        int finished = 0;
+
+        @Override
+        public void onTick(long secondsLeft) {
+            ticks.add(secondsLeft);
+        }
+
+        @Override
+        public void onFinished() {
+            finished++;
+        }
+    }
+
+    private FakeScheduler scheduler;
+    private Countdown countdown;
+
+    @Before
+    public void setUp() {
+        scheduler = new FakeScheduler();
+        countdown = new Countdown(scheduler);
+    }
+
+    @Test
+    public void ticksEverySecondAndFinishesOnce() {
+        RecordingListener listener = new RecordingListener();
+        countdown.start(3000);
+        countdown.resume(listener);
+        scheduler.advance(5000);
+
+        assertEquals(3, listener.ticks.size());
+        assertEquals(Long.valueOf(3), listener.ticks.get(0));
+        assertEquals(Long.valueOf(1), listener.ticks.get(2));
+        assertEquals(1, listener.finished);
+        assertFalse(countdown.isRunning());
+        assertEquals(0, scheduler.pending());
+    }
+
+    @Test
+    public void pauseStopsTicks() {
+        RecordingListener listener = new RecordingListener();
+        countdown.start(10000);
+        countdown.resume(listener);
+        countdown.pause();
+        assertEquals(0, scheduler.pending());
+
+        scheduler.advance(20000);
+        assertEquals(1, listener.ticks.size());
+        assertEquals(0, listener.finished);
+    }
+
+    @Test
+    public void resumesFromDeadlineAfterConfigurationChange() {
+        RecordingListener first = new RecordingListener();
+        countdown.start(10000);
+        long deadline = countdown.getDeadline();
+        countdown.resume(first);
+        scheduler.advance(4000);
+
+        // onPause and onDestroyView of the old view, onCreateView and onResume of the new one
+        countdown.pause();
+        scheduler.advance(500);
+        countdown.start(10000);
+        RecordingListener second = new RecordingListener();
+        countdown.resume(second);
+
+        assertEquals(deadline, countdown.getDeadline());
+        assertEquals(Long.valueOf(6), second.ticks.get(0));
+        scheduler.advance(10000);
+        assertEquals(0, first.finished);
+        assertEquals(1, second.finished);
+        assertEquals(0, scheduler.pending());
+    }
+
+    @Test
+    public void resetStartsOver() {
+        countdown.start(10000);
+        countdown.resume(new RecordingListener());
+        scheduler.advance(4000);
+        countdown.reset();
+
+        countdown.start(10000);
+        assertEquals(scheduler.now() + 10000, countdown.getDeadline());
+    }
+
+    @Test
+    public void lockCancelCyclesLeaveNothingScheduled() {
+        int threads = Thread.activeCount();
+        for (int i = 0; i < 1000; i++) {
+            RecordingListener listener = new RecordingListener();
+            countdown.start(30000);
+            countdown.resume(listener);
+            scheduler.advance(i % 3000);
+            // cancel button: dismiss runs onDestroyView, then onDestroy
+            countdown.pause();
+            countdown.reset();
+            assertEquals(0, scheduler.pending());
+            assertEquals(0, listener.finished);
+            assertEquals(0, countdown.getDeadline());
+        }
+        assertEquals(threads, Thread.activeCount());
+    }
+}
@@ -0,0 +1,146 @@
+package com.cordova.plugin.android.fingerprintkey;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Interleaved availability requests against a fake bridge: every result has to reach the
+ * callback of its own request, and each request has to complete exactly once.
+ */
+public class RequestRegistryTest {
+
+    private static final int REQUESTS = 500;
+    private static final int THREADS = 8;
+
+    /**
+     * Records what the bridge would deliver to JS for one callback.
+     */
+    private static class FakeCallbackContext extends CallbackContext {
+        final List<PluginResult> results = new ArrayList<PluginResult>();
+        int finalResults = 0;
+        boolean sentAfterFinal = false;
+
+        FakeCallbackContext(String callbackId) {
+            super(callbackId);
+        }
+
+        @Override
+        public synchronized void sendPluginResult(PluginResult pluginResult) {
+            if (finalResults > 0) {
+                sentAfterFinal = true;
+            }
+            results.add(pluginResult);
+            if (!pluginResult.getKeepCallback()) {
+                finalResults++;
+            }
+        }
+
+        synchronized PluginResult lastResult() {
+            return results.get(results.size() - 1);
+        }
+    }
+
+    @Test
+    public void interleavedRequestsReachTheirOwnCallback() throws Exception {
+        final RequestRegistry registry = new RequestRegistry();
+        final FakeCallbackContext[] contexts = new FakeCallbackContext[REQUESTS];
+        for (int i = 0; i < REQUESTS; i++) {
+            contexts[i] = new FakeCallbackContext("FingerprintKey" + i);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < THREADS; t++) {
+            final int offset = t;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        // every thread walks all requests from a different offset, so each
+                        // request is registered, updated and finished from several threads
+                        for (int n = 0; n < REQUESTS; n++) {
+                            int i = (n + offset * (REQUESTS / THREADS)) % REQUESTS;
+                            FakeCallbackContext context = contexts[i];
+                            if (offset == 0) {
+                                registry.register(context);
+                            }
+                            registry.update(context.getCallbackId(), new PluginResult(PluginResult.Status.NO_RESULT));
+                            JSONObject resultJson = new JSONObject();
+                            resultJson.put("isAvailable", true);
+                            resultJson.put("callbackId", context.getCallbackId());
+                            registry.finish(context.getCallbackId(), new PluginResult(PluginResult.Status.OK, resultJson));
+                        }
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        for (FakeCallbackContext context : contexts) {
+            assertEquals(context.getCallbackId(), 1, context.finalResults);
+            assertFalse(context.getCallbackId(), context.sentAfterFinal);
+            JSONObject resultJson = new JSONObject(context.lastResult().getMessage());
+            assertEquals(context.getCallbackId(), resultJson.getString("callbackId"));
+        }
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void cancelAllCompletesEveryPendingRequestOnce() throws Exception {
+        final RequestRegistry registry = new RequestRegistry();
+        final FakeCallbackContext[] contexts = new FakeCallbackContext[REQUESTS];
+        for (int i = 0; i < REQUESTS; i++) {
+            contexts[i] = new FakeCallbackContext("FingerprintKey" + i);
+            registry.register(contexts[i]);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < THREADS; t++) {
+            final int offset = t;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        if (offset == 0) {
+                            registry.cancelAll("Request cancelled");
+                            return;
+                        }
+                        for (int i = offset; i < REQUESTS; i += THREADS) {
+                            registry.finish(contexts[i].getCallbackId(), new PluginResult(PluginResult.Status.OK, "ok"));
+                        }
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        for (FakeCallbackContext context : contexts) {
+            assertEquals(context.getCallbackId(), 1, context.finalResults);
+        }
+        assertEquals(0, registry.size());
+    }
+}
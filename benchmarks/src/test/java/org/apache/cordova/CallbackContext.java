@@ -0,0 +1,21 @@
+package org.apache.cordova;
+
+/**
+ * Stand-in for Cordova's CallbackContext with only what the plugin's pure-Java classes use.
+ * Subclasses play the bridge by recording what is sent.
+ */
+public class CallbackContext {
+
+    private final String callbackId;
+
+    public CallbackContext(String callbackId) {
+        this.callbackId = callbackId;
+    }
+
+    public String getCallbackId() {
+        return callbackId;
+    }
+
+    public void sendPluginResult(PluginResult pluginResult) {
+    }
+}
@@ -0,0 +1,48 @@
+package org.apache.cordova;
+
+import org.json.JSONObject;
+
+/**
+ * Stand-in for Cordova's PluginResult with only what the plugin's pure-Java classes use.
+ */
+public class PluginResult {
+
+    public enum Status {
+        NO_RESULT,
+        OK,
+        ERROR
+    }
+
+    private final Status status;
+    private final String message;
+    private boolean keepCallback = false;
+
+    public PluginResult(Status status) {
+        this(status, (String) null);
+    }
+
+    public PluginResult(Status status, String message) {
+        this.status = status;
+        this.message = message;
+    }
+
+    public PluginResult(Status status, JSONObject message) {
+        this(status, message.toString());
+    }
+
+    public void setKeepCallback(boolean keepCallback) {
+        this.keepCallback = keepCallback;
+    }
+
+    public boolean getKeepCallback() {
+        return keepCallback;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,53 @@
+package com.cordova.plugin.android.fingerprintkey;
+
+import android.os.SystemClock;
+
+import java.util.HashMap;
+
+/**
+ * Tracks when keys created with an authentication validity duration were last unlocked by
+ * a scan. While a key's window is open its seed can be derived without showing a dialog;
+ * keystore still enforces the window, so this is only a hint to skip the dialog.
+ */
+public class AuthSession {
+
+    private static class Window {
+        final long authenticatedAt;
+        final long validityMillis;
+
+        Window(long authenticatedAt, long validityMillis) {
+            this.authenticatedAt = authenticatedAt;
+            this.validityMillis = validityMillis;
+        }
+    }
+
+    private final HashMap<String, Window> mWindows = new HashMap<String, Window>();
+
+    public synchronized void markAuthenticated(String keyId, int validitySeconds) {
+        if (validitySeconds <= 0) {
+            mWindows.remove(keyId);
+            return;
+        }
+        mWindows.put(keyId, new Window(SystemClock.elapsedRealtime(), validitySeconds * 1000L));
+    }
+
+    public synchronized boolean isAuthenticated(String keyId) {
+        Window window = mWindows.get(keyId);
+        if (window == null) {
+            return false;
+        }
+        if (SystemClock.elapsedRealtime() - window.authenticatedAt >= window.validityMillis) {
+            mWindows.remove(keyId);
+            return false;
+        }
+        return true;
+    }
+
+    public synchronized void expire(String keyId) {
+        mWindows.remove(keyId);
+    }
+
+    public synchronized void clear() {
+        mWindows.clear();
+    }
+}
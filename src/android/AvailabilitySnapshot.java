@@ -0,0 +1,80 @@
+package com.cordova.plugin.android.fingerprintkey;
+
+import android.content.Context;
+import android.support.v4.hardware.fingerprint.FingerprintManagerCompat;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Whether fingerprint hardware is present and fingerprints are enrolled, queried from the
+ * system service once and then answered from memory until {@link #invalidate} is called,
+ * e.g. when the app resumes or an error suggests the enrollment changed.
+ */
+public class AvailabilitySnapshot {
+
+    private final FingerprintManagerCompat mFingerprintManager;
+    private boolean mStale = true;
+    private boolean mHardwareDetected;
+    private boolean mEnrolled;
+    private long mRefreshes = 0;
+
+    public AvailabilitySnapshot(Context context) {
+        mFingerprintManager = FingerprintManagerCompat.from(context.getApplicationContext());
+    }
+
+    public FingerprintManagerCompat getFingerprintManager() {
+        return mFingerprintManager;
+    }
+
+    public synchronized void invalidate() {
+        mStale = true;
+    }
+
+    public synchronized boolean isFresh() {
+        return !mStale;
+    }
+
+    private void ensureFresh() {
+        if (!mStale) {
+            return;
+        }
+        try {
+            mHardwareDetected = mFingerprintManager.isHardwareDetected();
+            mEnrolled = mHardwareDetected && mFingerprintManager.hasEnrolledFingerprints();
+        } catch (Exception e) {
+            mHardwareDetected = false;
+            mEnrolled = false;
+        }
+        mStale = false;
+        mRefreshes++;
+    }
+
+    public synchronized boolean isHardwareDetected() {
+        ensureFresh();
+        return mHardwareDetected;
+    }
+
+    public synchronized boolean hasEnrolledFingerprints() {
+        ensureFresh();
+        return mEnrolled;
+    }
+
+    public synchronized boolean isAvailable() {
+        ensureFresh();
+        return mHardwareDetected && mEnrolled;
+    }
+
+    public synchronized JSONObject toJson() throws JSONException {
+        ensureFresh();
+        JSONObject json = new JSONObject();
+        json.put("isAvailable", mHardwareDetected && mEnrolled);
+        json.put("isHardwareDetected", mHardwareDetected);
+        json.put("hasEnrolledFingerprints", mEnrolled);
+        return json;
+    }
+
+    public synchronized long getRefreshes() {
+        return mRefreshes;
+    }
+}
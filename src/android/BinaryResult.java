@@ -0,0 +1,27 @@
+package com.cordova.plugin.android.fingerprintkey;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The binary result format of initkey and fetchkey: a status byte, the error code as a
+ * big-endian int, the attempts as a big-endian short, then the raw seed bytes if any.
+ */
+final class BinaryResult {
+
+    static final int HEADER_SIZE = 7;
+    static final int STATUS_OK = 0;
+    static final int STATUS_ERROR = 1;
+    static final int STATUS_CANCELLED = 2;
+
+    private BinaryResult() {
+    }
+
+    static byte[] encode(int status, int errCode, int attempts, byte[] seed) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + (seed != null ? seed.length : 0));
+        buffer.put((byte) status).putInt(errCode).putShort((short) attempts);
+        if (seed != null) {
+            buffer.put(seed);
+        }
+        return buffer.array();
+    }
+}
@@ -0,0 +1,91 @@
+package com.cordova.plugin.android.fingerprintkey;
+
+/**
+ * Counts down to a deadline in whole seconds on a {@link Scheduler}, the main looper for the
+ * lock dialog, without a thread of its own. The deadline survives {@link #pause}, so a
+ * dialog recreated after a configuration change resumes where it was; {@link #reset} ends
+ * the countdown for good.
+ */
+final class Countdown {
+
+    /**
+     * Where ticks run and what time it is. Must be monotonic.
+     */
+    interface Scheduler {
+        long now();
+
+        void postDelayed(Runnable runnable, long delayMillis);
+
+        void cancel(Runnable runnable);
+    }
+
+    interface Listener {
+        void onTick(long secondsLeft);
+
+        void onFinished();
+    }
+
+    private final Scheduler mScheduler;
+    private Listener mListener;
+    // 0 while not started
+    private long mDeadline;
+
+    private final Runnable mTick = new Runnable() {
+        @Override
+        public void run() {
+            Listener listener = mListener;
+            if (listener == null) {
+                return;
+            }
+            long left = mDeadline - mScheduler.now();
+            if (left <= 0) {
+                mListener = null;
+                listener.onFinished();
+                return;
+            }
+            listener.onTick((left + 999) / 1000);
+            // wake up on the next whole second
+            mScheduler.postDelayed(this, (left - 1) % 1000 + 1);
+        }
+    };
+
+    Countdown(Scheduler scheduler) {
+        mScheduler = scheduler;
+    }
+
+    /**
+     * Sets the deadline, unless the countdown was already started and not reset.
+     */
+    void start(long durationMillis) {
+        if (mDeadline == 0) {
+            mDeadline = mScheduler.now() + durationMillis;
+        }
+    }
+
+    /**
+     * Reports the time left right away and then on every whole second until the deadline.
+     */
+    void resume(Listener listener) {
+        mScheduler.cancel(mTick);
+        mListener = listener;
+        mTick.run();
+    }
+
+    void pause() {
+        mScheduler.cancel(mTick);
+        mListener = null;
+    }
+
+    void reset() {
+        pause();
+        mDeadline = 0;
+    }
+
+    boolean isRunning() {
+        return mListener != null;
+    }
+
+    long getDeadline() {
+        return mDeadline;
+    }
+}
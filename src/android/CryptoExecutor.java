@@ -0,0 +1,104 @@
+package com.cordova.plugin.android.fingerprintkey;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded executor for keystore and crypto work, so that key generation and
+ * Mac initialization never run on the WebView bridge thread.
+ */
+public class CryptoExecutor {
+
+    private static final int POOL_SIZE = 2;
+    private static final int QUEUE_CAPACITY = 64;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private final ThreadPoolExecutor mExecutor;
+    private final AtomicLong mSubmitted = new AtomicLong();
+    private final AtomicLong mStarted = new AtomicLong();
+    private final AtomicLong mCompleted = new AtomicLong();
+    private final AtomicLong mRejected = new AtomicLong();
+    private final AtomicLong mTotalWaitNanos = new AtomicLong();
+    private final AtomicLong mMaxWaitNanos = new AtomicLong();
+
+    public CryptoExecutor() {
+        mExecutor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(QUEUE_CAPACITY),
+                new ThreadFactory() {
+                    private final AtomicInteger mCount = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "FingerprintKey-crypto-" + mCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queues the task. Returns false if the queue is full or the executor is shut down.
+     */
+    public boolean execute(final Runnable task) {
+        final long enqueuedAt = System.nanoTime();
+        try {
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    recordWait(System.nanoTime() - enqueuedAt);
+                    try {
+                        task.run();
+                    } finally {
+                        mCompleted.incrementAndGet();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            mRejected.incrementAndGet();
+            return false;
+        }
+        mSubmitted.incrementAndGet();
+        return true;
+    }
+
+    private void recordWait(long waitNanos) {
+        Metrics.record(Metrics.QUEUE, waitNanos);
+        mStarted.incrementAndGet();
+        mTotalWaitNanos.addAndGet(waitNanos);
+        long max = mMaxWaitNanos.get();
+        while (waitNanos > max && !mMaxWaitNanos.compareAndSet(max, waitNanos)) {
+            max = mMaxWaitNanos.get();
+        }
+    }
+
+    public int getQueueDepth() {
+        return mExecutor.getQueue().size();
+    }
+
+    public JSONObject toJson() throws JSONException {
+        long started = mStarted.get();
+        JSONObject json = new JSONObject();
+        json.put("queueDepth", getQueueDepth());
+        json.put("active", mExecutor.getActiveCount());
+        json.put("submitted", mSubmitted.get());
+        json.put("completed", mCompleted.get());
+        json.put("rejected", mRejected.get());
+        json.put("avgWaitMillis", started == 0 ? 0 : mTotalWaitNanos.get() / started / 1000000.0);
+        json.put("maxWaitMillis", mMaxWaitNanos.get() / 1000000.0);
+        return json;
+    }
+
+    public void shutdown() {
+        mExecutor.shutdownNow();
+    }
+}
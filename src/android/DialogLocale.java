@@ -0,0 +1,46 @@
+package com.cordova.plugin.android.fingerprintkey;
+
+import org.json.JSONObject;
+
+/**
+ * Texts of the dialogs. Immutable, so a parsed locale can be cached and shared between
+ * calls, see {@link LocaleRegistry}.
+ */
+public final class DialogLocale {
+
+    public static final DialogLocale DEFAULT = new DialogLocale("타이틀", "취소", "설명", "지문", "인식실패", "인식성공",
+            "연속으로 지문 인증을 실패하였습니다. 잠시 후 다시 이용해 주시기 바랍니다");
+
+    public final String titleText;
+    public final String cancelText;
+    public final String descText;
+    public final String hintText;
+    public final String notRecognizedText;
+    public final String successText;
+    public final String tooManyTries;
+
+    public DialogLocale(String titleText, String cancelText, String descText, String hintText,
+                        String notRecognizedText, String successText, String tooManyTries) {
+        this.titleText = titleText;
+        this.cancelText = cancelText;
+        this.descText = descText;
+        this.hintText = hintText;
+        this.notRecognizedText = notRecognizedText;
+        this.successText = successText;
+        this.tooManyTries = tooManyTries;
+    }
+
+    /**
+     * Parses a locale bundle from JS; missing texts fall back to {@link #DEFAULT}.
+     */
+    public static DialogLocale fromJson(JSONObject json) {
+        return new DialogLocale(
+                json.optString("title", DEFAULT.titleText),
+                json.optString("cancel", DEFAULT.cancelText),
+                json.optString("desc", DEFAULT.descText),
+                json.optString("hint", DEFAULT.hintText),
+                json.optString("notrecognized", DEFAULT.notRecognizedText),
+                json.optString("success", DEFAULT.successText),
+                json.optString("toomanytries", DEFAULT.tooManyTries));
+    }
+}
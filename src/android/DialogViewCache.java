@@ -0,0 +1,125 @@
+package com.cordova.plugin.android.fingerprintkey;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.util.SparseArray;
+import android.view.ContextThemeWrapper;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Inflated dialog view hierarchies kept for reuse, so showing a fingerprint dialog does not
+ * inflate its layout from XML every time. Views can be inflated ahead of time with
+ * {@link #warmUp} and are handed back by the dialogs when they are destroyed.
+ * Must only be used on the UI thread.
+ */
+final class DialogViewCache {
+
+    static final int DIALOG_THEME = android.R.style.Theme_Material_Light_Dialog;
+
+    private static final SparseArray<View> sViews = new SparseArray<View>();
+
+    private static final AtomicLong sColdShows = new AtomicLong();
+    private static final AtomicLong sColdFirstFrameNanos = new AtomicLong();
+    private static final AtomicLong sWarmShows = new AtomicLong();
+    private static final AtomicLong sWarmFirstFrameNanos = new AtomicLong();
+    private static volatile long sLastFirstFrameNanos;
+
+    private DialogViewCache() {
+    }
+
+    /**
+     * Inflates both dialog layouts the next time the UI thread is idle.
+     */
+    static void warmUp(final Activity activity) {
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                if (activity.isFinishing()) {
+                    return false;
+                }
+                ResourceIds ids = ResourceIds.get(activity);
+                preinflate(activity, ids.fingerprintDialogContainer);
+                preinflate(activity, ids.fingerprintLockDialogContainer);
+                return false;
+            }
+        });
+    }
+
+    private static void preinflate(Activity activity, int layoutId) {
+        View existing = take(activity, layoutId);
+        if (existing != null) {
+            // still usable, put it back
+            sViews.put(layoutId, existing);
+            return;
+        }
+        Context themed = new ContextThemeWrapper(activity, DIALOG_THEME);
+        sViews.put(layoutId, LayoutInflater.from(themed).inflate(layoutId, null, false));
+    }
+
+    /**
+     * Removes and returns the cached view for the layout if it was inflated for this
+     * activity, or returns null.
+     */
+    static View take(Activity activity, int layoutId) {
+        View view = sViews.get(layoutId);
+        if (view == null) {
+            return null;
+        }
+        sViews.remove(layoutId);
+        Context context = view.getContext();
+        if (context instanceof ContextWrapper && ((ContextWrapper) context).getBaseContext() == activity
+                && view.getParent() == null) {
+            return view;
+        }
+        // inflated for an activity that is gone
+        return null;
+    }
+
+    /**
+     * Detaches the view of a destroyed dialog and keeps it for the next one.
+     */
+    static void recycle(int layoutId, View view) {
+        if (view.getParent() instanceof ViewGroup) {
+            ((ViewGroup) view.getParent()).removeView(view);
+        }
+        sViews.put(layoutId, view);
+    }
+
+    static void clear() {
+        sViews.clear();
+    }
+
+    static void recordFirstFrame(boolean warm, long nanos) {
+        Metrics.record(Metrics.DIALOG, nanos);
+        sLastFirstFrameNanos = nanos;
+        if (warm) {
+            sWarmShows.incrementAndGet();
+            sWarmFirstFrameNanos.addAndGet(nanos);
+        } else {
+            sColdShows.incrementAndGet();
+            sColdFirstFrameNanos.addAndGet(nanos);
+        }
+    }
+
+    static JSONObject toJson() throws JSONException {
+        long cold = sColdShows.get();
+        long warm = sWarmShows.get();
+        JSONObject json = new JSONObject();
+        json.put("coldShows", cold);
+        json.put("coldAvgFirstFrameMillis", cold == 0 ? 0 : sColdFirstFrameNanos.get() / cold / 1000000.0);
+        json.put("warmShows", warm);
+        json.put("warmAvgFirstFrameMillis", warm == 0 ? 0 : sWarmFirstFrameNanos.get() / warm / 1000000.0);
+        json.put("lastFirstFrameMillis", sLastFirstFrameNanos / 1000000.0);
+        return json;
+    }
+}
@@ -0,0 +1,48 @@
+package com.cordova.plugin.android.fingerprintkey;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.json.JSONObject;
+
+/**
+ * A single long-lived callback that authentication events are pushed to as they happen,
+ * independent of the requests that caused them. Opening the channel again replaces the
+ * previous subscriber.
+ */
+public class EventChannel {
+
+    private volatile CallbackContext mCallbackContext;
+
+    public void open(CallbackContext callbackContext) {
+        close();
+        mCallbackContext = callbackContext;
+        PluginResult result = new PluginResult(PluginResult.Status.NO_RESULT);
+        result.setKeepCallback(true);
+        callbackContext.sendPluginResult(result);
+    }
+
+    public boolean isOpen() {
+        return mCallbackContext != null;
+    }
+
+    public void emit(JSONObject eventJson) {
+        CallbackContext callbackContext = mCallbackContext;
+        if (callbackContext == null) {
+            return;
+        }
+        PluginResult result = new PluginResult(PluginResult.Status.OK, eventJson);
+        result.setKeepCallback(true);
+        callbackContext.sendPluginResult(result);
+    }
+
+    /**
+     * Completes the subscriber's callback, if any, so JS can release it.
+     */
+    public void close() {
+        CallbackContext callbackContext = mCallbackContext;
+        mCallbackContext = null;
+        if (callbackContext != null) {
+            callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.NO_RESULT));
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.cordova.plugin.android.fingerprintkey;
 
 import android.app.DialogFragment;
+import android.app.FragmentManager;
 import android.app.KeyguardManager;
 import android.content.Context;
 import android.content.DialogInterface;
@@ -8,6 +9,7 @@ import android.content.Intent;
 import android.os.Bundle;
 import android.support.v4.hardware.fingerprint.FingerprintManagerCompat;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -38,22 +40,58 @@ public class FingerprintAuthenticationDialogFragment extends DialogFragment
     private FingerprintUiHelper mFingerprintUiHelper;
     FingerprintUiHelper.FingerprintUiHelperBuilder mFingerprintUiHelperBuilder;
     private Callback callback;
-    private FingerprintScanner.Locale locale = null;
+    private DialogLocale locale = null;
+    private ResourceIds mIds;
+    private AvailabilitySnapshot mAvailability;
+    private long mShowRequestedAt;
+    private boolean mWarmView;
+    private FingerprintScanner.Timing mTiming;
+    private FingerprintScanner.EventListener mEventListener;
+
+    // a dismissed dialog, kept so the next scan does not construct a new fragment
+    private static FingerprintAuthenticationDialogFragment sRecycled;
 
     public FingerprintAuthenticationDialogFragment() {
     }
 
+    /**
+     * Returns a recycled dialog if one is available, or a new one. Must be called on the
+     * UI thread.
+     */
+    public static FingerprintAuthenticationDialogFragment obtain() {
+        FingerprintAuthenticationDialogFragment fragment = sRecycled;
+        sRecycled = null;
+        return fragment != null ? fragment : new FingerprintAuthenticationDialogFragment();
+    }
+
+    /**
+     * Drops the recycled dialog, e.g. when the plugin is destroyed.
+     */
+    static void clearRecycled() {
+        sRecycled = null;
+    }
+
+    @Override
+    public void show(FragmentManager manager, String tag) {
+        mShowRequestedAt = System.nanoTime();
+        super.show(manager, tag);
+    }
+
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
         // Do not create a new Fragment when the Activity is re-created such as orientation changes.
         setRetainInstance(true);
-        setStyle(DialogFragment.STYLE_NO_TITLE, android.R.style.Theme_Material_Light_Dialog);
+        setStyle(DialogFragment.STYLE_NO_TITLE, DialogViewCache.DIALOG_THEME);
 
         mKeyguardManager = (KeyguardManager) getContext().getSystemService(Context.KEYGUARD_SERVICE);
+        if (mAvailability == null) {
+            // recreated by the system rather than shown by the plugin
+            mAvailability = new AvailabilitySnapshot(getContext());
+        }
         mFingerprintUiHelperBuilder = new FingerprintUiHelper.FingerprintUiHelperBuilder(
-                getContext(), FingerprintManagerCompat.from(getContext()));
+                getContext(), mAvailability);
 
     }
 
@@ -62,34 +100,28 @@ public class FingerprintAuthenticationDialogFragment extends DialogFragment
                              Bundle savedInstanceState) {
         Bundle args = getArguments();
         Log.d(TAG, "disableBackup: " + FingerprintScanner.mDisableBackup);
+        mIds = ResourceIds.get(getContext());
 
-        int fingerprint_dialog_container_id = getResources()
-                .getIdentifier("fingerprint_dialog_container", "layout",
-                        FingerprintScanner.packageName);
-        View v = inflater.inflate(fingerprint_dialog_container_id, container, false);
+        View v = DialogViewCache.take(getActivity(), mIds.fingerprintDialogContainer);
+        mWarmView = v != null;
+        if (v == null) {
+            v = inflater.inflate(mIds.fingerprintDialogContainer, container, false);
+        }
 
-        int fingerprint_title_id = getResources()
-                    .getIdentifier("fingerprint_title", "id", FingerprintScanner.packageName);
-        TextView mFingerprintTitle = (TextView) v.findViewById(fingerprint_title_id);
+        TextView mFingerprintTitle = (TextView) v.findViewById(mIds.fingerprintTitle);
 
         if (this.locale != null) {
             mFingerprintTitle.setText(this.locale.titleText);
             getDialog().setTitle(this.locale.titleText);
         } else {
-            mFingerprintTitle.setText(this.locale.titleText);
-            int fingerprint_auth_dialog_title_id = getResources()
-                    .getIdentifier("fingerprint_auth_dialog_title", "string",
-                            FingerprintScanner.packageName);
-            mFingerprintTitle.setText(getString(fingerprint_auth_dialog_title_id));
-            getDialog().setTitle(getString(fingerprint_auth_dialog_title_id));
+            mFingerprintTitle.setText(getString(mIds.fingerprintAuthDialogTitle));
+            getDialog().setTitle(getString(mIds.fingerprintAuthDialogTitle));
         }
 
         getDialog().setCanceledOnTouchOutside(false);
         setCancelable(false);
 
-        int cancel_button_id = getResources()
-                .getIdentifier("cancel_button", "id", FingerprintScanner.packageName);
-        mCancelButton = (Button) v.findViewById(cancel_button_id);
+        mCancelButton = (Button) v.findViewById(mIds.cancelButton);
         mCancelButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View view) {
@@ -97,33 +129,26 @@ public class FingerprintAuthenticationDialogFragment extends DialogFragment
                 dismiss();
             }
         });
-        int hint_color_id = getContext().getResources().getIdentifier("hint_color", "color", FingerprintScanner.packageName);
-        mCancelButton.setTextColor(mCancelButton.getResources().getColor(hint_color_id, null));
-        int fingerprint_container_id = getResources()
-                .getIdentifier("fingerprint_container", "id", FingerprintScanner.packageName);
-        mFingerprintContent = v.findViewById(fingerprint_container_id);
-
-        int fingerprint_icon_id = getResources()
-                .getIdentifier("fingerprint_icon", "id", FingerprintScanner.packageName);
-        int fingerprint_status_id = getResources()
-                .getIdentifier("fingerprint_status", "id", FingerprintScanner.packageName);
+        mCancelButton.setTextColor(mCancelButton.getResources().getColor(mIds.hintColor, null));
+        mFingerprintContent = v.findViewById(mIds.fingerprintContainer);
+
         mFingerprintUiHelper = mFingerprintUiHelperBuilder.build(
-                (ImageView) v.findViewById(fingerprint_icon_id),
-                (TextView) v.findViewById(fingerprint_status_id), this);
+                (ImageView) v.findViewById(mIds.fingerprintIcon),
+                (TextView) v.findViewById(mIds.fingerprintStatus), this);
+        mFingerprintUiHelper.setTiming(mTiming);
+        mFingerprintUiHelper.setEventListener(mEventListener);
 
+        TextView mFingerprintDescription = (TextView) v.findViewById(mIds.fingerprintDescription);
+        TextView mFingerprintHint = (TextView) v.findViewById(mIds.fingerprintStatus);
         if (this.locale != null) {
-            int fingerprint_description_id = getResources()
-                    .getIdentifier("fingerprint_description", "id", FingerprintScanner.packageName);
-            TextView mFingerprintDescription = (TextView) v.findViewById(fingerprint_description_id);
             mFingerprintDescription.setText(this.locale.descText);
-
-
-            int fingerprint_hint_id = getResources()
-                    .getIdentifier("fingerprint_status", "id", FingerprintScanner.packageName);
-            TextView mFingerprintHint = (TextView) v.findViewById(fingerprint_hint_id);
             mFingerprintHint.setText(this.locale.hintText);
 
             mFingerprintUiHelper.setLocale(this.locale);
+        } else if (mWarmView) {
+            // a reused view may still show the previous dialog's texts
+            mFingerprintDescription.setText(mIds.fingerprintDescriptionText);
+            mFingerprintHint.setText(mIds.fingerprintHint);
         }
 
 /*
@@ -138,6 +163,57 @@ public class FingerprintAuthenticationDialogFragment extends DialogFragment
     }
 
 
+    @Override
+    public void onStart() {
+        super.onStart();
+        if (mShowRequestedAt != 0) {
+            final long showRequestedAt = mShowRequestedAt;
+            final boolean warm = mWarmView;
+            mShowRequestedAt = 0;
+            Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    DialogViewCache.recordFirstFrame(warm, System.nanoTime() - showRequestedAt);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void onDestroyView() {
+        View v = getView();
+        if (v != null) {
+            v.removeCallbacks(mDismissRunnable);
+        }
+        mFingerprintUiHelper.release();
+        super.onDestroyView();
+        if (v != null) {
+            DialogViewCache.recycle(mIds.fingerprintDialogContainer, v);
+        }
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        if (getActivity() == null || !getActivity().isChangingConfigurations()) {
+            callback = null;
+            locale = null;
+            mCryptoObject = null;
+            mTiming = null;
+            mEventListener = null;
+            mStage = Stage.FINGERPRINT;
+            // the kept fragment must not hold on to the Activity, onCreate builds these again
+            mFingerprintUiHelperBuilder = null;
+            mAvailability = null;
+            mFingerprintUiHelper = null;
+            mKeyguardManager = null;
+            mCancelButton = null;
+            mSecondDialogButton = null;
+            mFingerprintContent = null;
+            sRecycled = this;
+        }
+    }
+
     @Override
     public void onResume() {
         super.onResume();
@@ -164,14 +240,12 @@ public class FingerprintAuthenticationDialogFragment extends DialogFragment
     }
 
     private void updateStage() {
-        int cancel_id = getResources()
-                .getIdentifier("cancel", "string", FingerprintScanner.packageName);
         switch (mStage) {
             case FINGERPRINT:
                 if (this.locale != null) {
                     mCancelButton.setText(this.locale.cancelText);
                 } else {
-                    mCancelButton.setText(cancel_id);
+                    mCancelButton.setText(mIds.cancel);
                 }
                 mFingerprintContent.setVisibility(View.VISIBLE);
                 break;
@@ -203,9 +277,23 @@ public class FingerprintAuthenticationDialogFragment extends DialogFragment
         // Callback from FingerprintUiHelper. Let the activity know that authentication was
         // successful.
         this.callback.onSuccess();
-        dismiss();
+        if (mTiming != null && mTiming.fast && getView() != null) {
+            // the result is already on its way, let the success feedback finish on screen
+            getView().postDelayed(mDismissRunnable, mTiming.successDelayMillis);
+        } else {
+            dismiss();
+        }
     }
 
+    private final Runnable mDismissRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (isAdded()) {
+                dismiss();
+            }
+        }
+    };
+
     @Override
     public void onError(int errCode) {
         this.callback.onError(errCode, mFingerprintUiHelper.getAttempts());
@@ -222,10 +310,26 @@ public class FingerprintAuthenticationDialogFragment extends DialogFragment
         this.callback = callback;
     }
 
-    public void setLocale(FingerprintScanner.Locale locale) {
+    public void setLocale(DialogLocale locale) {
         this.locale = locale;
     }
 
+    /**
+     * The plugin's availability snapshot, so the dialog does not query the fingerprint
+     * service itself.
+     */
+    public void setAvailability(AvailabilitySnapshot availability) {
+        mAvailability = availability;
+    }
+
+    public void setTiming(FingerprintScanner.Timing timing) {
+        mTiming = timing;
+    }
+
+    public void setEventListener(FingerprintScanner.EventListener eventListener) {
+        mEventListener = eventListener;
+    }
+
     /**
      * Enumeration to indicate which authentication method the user is trying to authenticate with.
      */
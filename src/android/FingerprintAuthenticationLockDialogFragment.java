@@ -1,22 +1,24 @@
 package com.cordova.plugin.android.fingerprintkey;
 
-import android.app.Activity;
 import android.app.DialogFragment;
+import android.app.FragmentManager;
 import android.app.KeyguardManager;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.support.v4.hardware.fingerprint.FingerprintManagerCompat;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Button;
 import android.widget.ImageView;
 import android.widget.TextView;
-import java.util.Timer;
-import java.util.TimerTask;
 
 /**
  * A dialog which uses fingerprint APIs to authenticate the user, and falls back to password
@@ -39,26 +41,79 @@ public class FingerprintAuthenticationLockDialogFragment extends DialogFragment
     private FingerprintUiHelper mFingerprintUiHelper;
     FingerprintUiHelper.FingerprintUiHelperBuilder mFingerprintUiHelperBuilder;
     private Callback callback;
-    private FingerprintScanner.Locale locale = null;
-    private TimerTask mTask;
-    private Timer mTimer;
-    private int remaining;
+    private DialogLocale locale = null;
+    private ResourceIds mIds;
+    private AvailabilitySnapshot mAvailability;
+    private static final String COUNTDOWN_SUFFIX = "초 후에 재시도 해주시기 바랍니다.";
+
+    // the countdown runs on the main looper while the dialog is resumed; the deadline
+    // survives configuration changes, so a recreated view picks up where it left off
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Countdown mCountdown = new Countdown(new Countdown.Scheduler() {
+        @Override
+        public long now() {
+            return SystemClock.elapsedRealtime();
+        }
+
+        @Override
+        public void postDelayed(Runnable runnable, long delayMillis) {
+            mHandler.postDelayed(runnable, delayMillis);
+        }
+
+        @Override
+        public void cancel(Runnable runnable) {
+            mHandler.removeCallbacks(runnable);
+        }
+    });
+    private TextView mCountdownView;
     private int waitTime;
+    private long mShowRequestedAt;
+    private boolean mWarmView;
+
+    // a dismissed dialog, kept so the next lock does not construct a new fragment
+    private static FingerprintAuthenticationLockDialogFragment sRecycled;
 
     public FingerprintAuthenticationLockDialogFragment() {
     }
 
+    /**
+     * Returns a recycled dialog if one is available, or a new one. Must be called on the
+     * UI thread.
+     */
+    public static FingerprintAuthenticationLockDialogFragment obtain() {
+        FingerprintAuthenticationLockDialogFragment fragment = sRecycled;
+        sRecycled = null;
+        return fragment != null ? fragment : new FingerprintAuthenticationLockDialogFragment();
+    }
+
+    /**
+     * Drops the recycled dialog, e.g. when the plugin is destroyed.
+     */
+    static void clearRecycled() {
+        sRecycled = null;
+    }
+
+    @Override
+    public void show(FragmentManager manager, String tag) {
+        mShowRequestedAt = System.nanoTime();
+        super.show(manager, tag);
+    }
+
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
         // Do not create a new Fragment when the Activity is re-created such as orientation changes.
         setRetainInstance(true);
-        setStyle(DialogFragment.STYLE_NORMAL, android.R.style.Theme_Material_Light_Dialog);
+        setStyle(DialogFragment.STYLE_NORMAL, DialogViewCache.DIALOG_THEME);
 
         mKeyguardManager = (KeyguardManager) getContext().getSystemService(Context.KEYGUARD_SERVICE);
+        if (mAvailability == null) {
+            // recreated by the system rather than shown by the plugin
+            mAvailability = new AvailabilitySnapshot(getContext());
+        }
         mFingerprintUiHelperBuilder = new FingerprintUiHelper.FingerprintUiHelperBuilder(
-                getContext(), FingerprintManagerCompat.from(getContext()));
+                getContext(), mAvailability);
 
     }
 
@@ -67,26 +122,23 @@ public class FingerprintAuthenticationLockDialogFragment extends DialogFragment
                              Bundle savedInstanceState) {
         Bundle args = getArguments();
         Log.d(TAG, "disableBackup: " + FingerprintScanner.mDisableBackup);
+        mIds = ResourceIds.get(getContext());
 
         if (this.locale != null) {
             getDialog().setTitle(this.locale.titleText);
         } else {
-            int fingerprint_auth_dialog_title_id = getResources()
-                    .getIdentifier("fingerprint_auth_lock_dialog_title", "string",
-                            FingerprintScanner.packageName);
-            getDialog().setTitle(getString(fingerprint_auth_dialog_title_id));
+            getDialog().setTitle(getString(mIds.fingerprintAuthLockDialogTitle));
         }
 
         getDialog().setCanceledOnTouchOutside(false);
         setCancelable(false);
 
-        int fingerprint_dialog_container_id = getResources()
-                .getIdentifier("fingerprint_lock_dialog_container", "layout",
-                        FingerprintScanner.packageName);
-        View v = inflater.inflate(fingerprint_dialog_container_id, container, false);
-        int cancel_button_id = getResources()
-                .getIdentifier("lock_cancel_button", "id", FingerprintScanner.packageName);
-        mCancelButton = (Button) v.findViewById(cancel_button_id);
+        View v = DialogViewCache.take(getActivity(), mIds.fingerprintLockDialogContainer);
+        mWarmView = v != null;
+        if (v == null) {
+            v = inflater.inflate(mIds.fingerprintLockDialogContainer, container, false);
+        }
+        mCancelButton = (Button) v.findViewById(mIds.lockCancelButton);
         mCancelButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View view) {
@@ -94,81 +146,58 @@ public class FingerprintAuthenticationLockDialogFragment extends DialogFragment
                 dismiss();
             }
         });
-        int hint_color_id = getContext().getResources().getIdentifier("hint_color", "color", FingerprintScanner.packageName);
-        mCancelButton.setTextColor(mCancelButton.getResources().getColor(hint_color_id, null));
+        mCancelButton.setTextColor(mCancelButton.getResources().getColor(mIds.hintColor, null));
 
-        int fingerprint_container_id = getResources()
-                .getIdentifier("fingerprint_lock_container", "id", FingerprintScanner.packageName);
-        mFingerprintContent = v.findViewById(fingerprint_container_id);
+        mFingerprintContent = v.findViewById(mIds.fingerprintLockContainer);
 
-        int fingerprint_icon_id = getResources()
-                .getIdentifier("fingerprint_lock_icon", "id", FingerprintScanner.packageName);
-        int fingerprint_status_id = getResources()
-                .getIdentifier("fingerprint_lock_status", "id", FingerprintScanner.packageName);
         mFingerprintUiHelper = mFingerprintUiHelperBuilder.build(
-                (ImageView) v.findViewById(fingerprint_icon_id),
-                (TextView) v.findViewById(fingerprint_status_id), this);
+                (ImageView) v.findViewById(mIds.fingerprintLockIcon),
+                (TextView) v.findViewById(mIds.fingerprintLockStatus), this);
 
         if (this.locale != null) {
-            int fingerprint_description_id = getResources()
-                    .getIdentifier("fingerprint_lock_description", "id", FingerprintScanner.packageName);
-            TextView mFingerprintDescription = (TextView) v.findViewById(fingerprint_description_id);
+            TextView mFingerprintDescription = (TextView) v.findViewById(mIds.fingerprintLockDescription);
             mFingerprintDescription.setText(this.locale.descText);
 
-            int fingerprint_hint_id = getResources()
-                    .getIdentifier("fingerprint_lock_status", "id", FingerprintScanner.packageName);
-            TextView mFingerprintHint = (TextView) v.findViewById(fingerprint_hint_id);
+            TextView mFingerprintHint = (TextView) v.findViewById(mIds.fingerprintLockStatus);
             mFingerprintHint.setText(this.locale.hintText);
             mCancelButton.setText(this.locale.cancelText);
 
             mFingerprintUiHelper.setLocale(this.locale);
+        } else if (mWarmView) {
+            // a reused view may still show the previous dialog's texts
+            ((TextView) v.findViewById(mIds.fingerprintLockDescription)).setText(mIds.fingerprintDescriptionText);
+            ((TextView) v.findViewById(mIds.fingerprintLockStatus)).setText(mIds.fingerprintHint);
         }
 
-        // fire up timer
-        remaining = waitTime;
-
-
-        int fingerprint_hint_id = getResources()
-            .getIdentifier("fingerprint_lock_status", "id", FingerprintScanner.packageName);
-        final TextView mFingerprintHint = (TextView) v.findViewById(fingerprint_hint_id);
-        final Activity activity = getActivity();
-        final String suffix = "초 후에 재시도 해주시기 바랍니다.";
-        mTask = new TimerTask() {
-            @Override
-            public void run() {
-                activity.runOnUiThread(new Runnable(){
-                    @Override
-                    public void run() {
-                        mFingerprintHint.setText("" + remaining + suffix);
-                        remaining--;
-                        if (remaining == 0) {
-                            // quit
-                            callback.onSuccess();
-                            dismiss();
-                            mTimer.cancel();
-                            mTimer.purge();
-                        }
-                    }
-                });
-            }
-        };
-         
-        mTimer = new Timer();
-         
-        mTimer.schedule(mTask, 1000, 1000);
+        mCountdownView = (TextView) v.findViewById(mIds.fingerprintLockStatus);
+        mCountdown.start(waitTime * 1000L);
         updateStage();
         return v;
     }
 
+    private final Countdown.Listener mCountdownListener = new Countdown.Listener() {
+        @Override
+        public void onTick(long secondsLeft) {
+            mCountdownView.setText(secondsLeft + COUNTDOWN_SUFFIX);
+        }
+
+        @Override
+        public void onFinished() {
+            mCountdownView = null;
+            if (callback != null) {
+                callback.onSuccess();
+            }
+            dismiss();
+        }
+    };
+
     private void updateStage() {
-        int cancel_id = getResources()
-                .getIdentifier("cancel", "string", FingerprintScanner.packageName);
         switch (mStage) {
             case FINGERPRINT:
                 if (this.locale != null) {
                     mCancelButton.setText(this.locale.cancelText);
                 } else {
-                    mCancelButton.setText(cancel_id);
+                    mCancelButton.setText(mIds.cancel);
                 }
                 mFingerprintContent.setVisibility(View.VISIBLE);
                 break;
@@ -179,9 +208,62 @@ public class FingerprintAuthenticationLockDialogFragment extends DialogFragment
         this.waitTime = time;
     }
 
+    @Override
+    public void onStart() {
+        super.onStart();
+        if (mShowRequestedAt != 0) {
+            final long showRequestedAt = mShowRequestedAt;
+            final boolean warm = mWarmView;
+            mShowRequestedAt = 0;
+            Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    DialogViewCache.recordFirstFrame(warm, System.nanoTime() - showRequestedAt);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void onDestroyView() {
+        View v = getView();
+        // the countdown must not touch the view once another dialog reuses it
+        mCountdown.pause();
+        mCountdownView = null;
+        mFingerprintUiHelper.release();
+        super.onDestroyView();
+        if (v != null) {
+            DialogViewCache.recycle(mIds.fingerprintLockDialogContainer, v);
+        }
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        if (getActivity() == null || !getActivity().isChangingConfigurations()) {
+            callback = null;
+            locale = null;
+            mCountdown.reset();
+            // the kept fragment must not hold on to the Activity, onCreate builds these again
+            mFingerprintUiHelperBuilder = null;
+            mAvailability = null;
+            mFingerprintUiHelper = null;
+            mKeyguardManager = null;
+            mCancelButton = null;
+            mSecondDialogButton = null;
+            mFingerprintContent = null;
+            mCountdownView = null;
+            mCryptoObject = null;
+            sRecycled = this;
+        }
+    }
+
     @Override
     public void onResume() {
         super.onResume();
+        if (mCountdownView != null) {
+            mCountdown.resume(mCountdownListener);
+        }
     }
 
     public void setStage(Stage stage) {
@@ -190,6 +272,7 @@ public class FingerprintAuthenticationLockDialogFragment extends DialogFragment
     @Override
     public void onPause() {
         super.onPause();
+        mCountdown.pause();
     }
 
     @Override
@@ -212,10 +295,18 @@ public class FingerprintAuthenticationLockDialogFragment extends DialogFragment
         this.callback = callback;
     }
 
-    public void setLocale(FingerprintScanner.Locale locale) {
+    public void setLocale(DialogLocale locale) {
         this.locale = locale;
     }
 
+    /**
+     * The plugin's availability snapshot, so the dialog does not query the fingerprint
+     * service itself.
+     */
+    public void setAvailability(AvailabilitySnapshot availability) {
+        mAvailability = availability;
+    }
+
     /**
      * Enumeration to indicate which authentication method the user is trying to authenticate with.
      */
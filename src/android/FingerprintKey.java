@@ -6,6 +6,10 @@ import org.apache.cordova.CordovaPlugin;
 import org.apache.cordova.CordovaInterface;
 import android.annotation.TargetApi;
 import android.app.KeyguardManager;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.res.Configuration;
 import android.content.res.Resources;
 import android.hardware.fingerprint.FingerprintManager;
@@ -31,7 +35,10 @@ import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.UnrecoverableKeyException;
 import java.security.cert.CertificateException;
+import java.util.Arrays;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
@@ -47,9 +54,30 @@ public class FingerprintKey extends CordovaPlugin {
 
     private static final String DIALOG_FRAGMENT_TAG = "FpAuthDialog";
     private static final String ANDROID_KEY_STORE = "AndroidKeyStore";
+    // how long the sensor stays locked after too many failed attempts
+    private static final long SENSOR_LOCKOUT_MILLIS = 30000;
+    // fingerprint hardware missing or nothing enrolled, see AvailabilitySnapshot
+    private static final int ERROR_NOT_AVAILABLE = -315;
+    // FingerprintManager.FINGERPRINT_ERROR_HW_UNAVAILABLE and FINGERPRINT_ERROR_NO_FINGERPRINTS
+    private static final int ERROR_HW_UNAVAILABLE = 1;
+    private static final int ERROR_NO_FINGERPRINTS = 11;
+    // scankeyhealth and reprovision touch the key store once per key on the crypto executor
+    private static final int MAX_HEALTH_KEYS = 64;
 
-    public static CallbackContext mCallbackContext;
-    public static PluginResult mPluginResult;
+    private final RequestRegistry mRequests = new RequestRegistry();
+    private final KeyStoreHolder mKeyStoreHolder = new KeyStoreHolder();
+    private final PreparedMacCache mPreparedMacCache = new PreparedMacCache();
+    private final AuthSession mAuthSession = new AuthSession();
+    private final SeedCache mSeedCache = new SeedCache();
+    private BroadcastReceiver mScreenOffReceiver;
+    private final EventChannel mEvents = new EventChannel();
+    private final LocaleRegistry mLocales = new LocaleRegistry();
+    private CryptoExecutor mCryptoExecutor;
+    private LockoutStore mLockouts;
+    private AvailabilitySnapshot mAvailability;
+    // running headless scans by the callbackId of their request
+    private final ConcurrentHashMap<String, FingerprintScanner> mHeadlessScanners =
+            new ConcurrentHashMap<String, FingerprintScanner>();
 
     /**
      * Constructor.
@@ -68,7 +96,18 @@ public class FingerprintKey extends CordovaPlugin {
     public void initialize(CordovaInterface cordova, CordovaWebView webView) {
         super.initialize(cordova, webView);
         Log.v(TAG, "Init FingerprintAuth");
-        mPluginResult = new PluginResult(PluginResult.Status.NO_RESULT);
+        mCryptoExecutor = new CryptoExecutor();
+        mLockouts = new LockoutStore(cordova.getActivity());
+        mAvailability = new AvailabilitySnapshot(cordova.getActivity());
+
+        // cached seeds must not outlive the screen being turned off
+        mScreenOffReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                mSeedCache.clear();
+            }
+        };
+        cordova.getActivity().registerReceiver(mScreenOffReceiver, new IntentFilter(Intent.ACTION_SCREEN_OFF));
 
         if (android.os.Build.VERSION.SDK_INT < 23) {
             return;
@@ -85,296 +124,1091 @@ public class FingerprintKey extends CordovaPlugin {
      */
     public boolean execute(final String action,
                            JSONArray args,
-                           CallbackContext callbackContext) throws JSONException {
-        mCallbackContext = callbackContext;
+                           final CallbackContext callbackContext) throws JSONException {
         Log.v(TAG, "FingerprintAuth action: " + action);
         final JSONObject arg_object = args.getJSONObject(0);
+        final String callbackId = callbackContext.getCallbackId();
 
         if (action.equals("lock")) {
-            FingerprintScanner scanner = new FingerprintScanner(cordova.getActivity(), null);
-                try {
-                    // try to register
-                    FingerprintScanner.Locale locale = new FingerprintScanner.Locale();
-                    if (arg_object.has("locale")) {
-                        locale.descText = arg_object.getJSONObject("locale").getString("desc");//"설명";
-                        locale.titleText = arg_object.getJSONObject("locale").getString("title");//"타이틀";
-                        locale.cancelText = arg_object.getJSONObject("locale").getString("cancel");//"타이틀";
+            // lock only shows a dialog, there is no keystore work to offload
+            runOnUiThread(callbackContext, new ActionRunnable(callbackId) {
+                @Override
+                public void runAction() throws JSONException {
+                    lock(arg_object, callbackId);
+                }
+            });
+            return true;
+        } else if (action.equals("initkey")) {
+            runOnCryptoExecutor(callbackContext, new ActionRunnable(callbackId) {
+                @Override
+                public void runAction() throws JSONException {
+                    initKey(arg_object, callbackId);
+                }
+            });
+            return true;
+        } else if (action.equals("fetchkey")) {
+            runOnCryptoExecutor(callbackContext, new ActionRunnable(callbackId) {
+                @Override
+                public void runAction() throws JSONException {
+                    fetchKey(arg_object, callbackId);
+                }
+            });
+            return true;
+        } else if (action.equals("fetchkeys")) {
+            runOnCryptoExecutor(callbackContext, new ActionRunnable(callbackId) {
+                @Override
+                public void runAction() throws JSONException {
+                    fetchKeys(arg_object, callbackId);
+                }
+            });
+            return true;
+        } else if (action.equals("initkeys")) {
+            runOnCryptoExecutor(callbackContext, new ActionRunnable(callbackId) {
+                @Override
+                public void runAction() throws JSONException {
+                    initKeys(arg_object, callbackId);
+                }
+            });
+            return true;
+        } else if (action.equals("removekeys")) {
+            runOnCryptoExecutor(callbackContext, new ActionRunnable(callbackId) {
+                @Override
+                public void runAction() throws JSONException {
+                    removeKeys(arg_object, callbackId);
+                }
+            });
+            return true;
+        } else if (action.equals("listkeys")) {
+            runOnCryptoExecutor(callbackContext, new ActionRunnable(callbackId) {
+                @Override
+                public void runAction() throws JSONException {
+                    listKeys(callbackId);
+                }
+            });
+            return true;
+        } else if (action.equals("haskey")) {
+            runOnCryptoExecutor(callbackContext, new ActionRunnable(callbackId) {
+                @Override
+                public void runAction() throws JSONException {
+                    hasKey(arg_object, callbackId);
+                }
+            });
+            return true;
+        } else if (action.equals("scankeyhealth")) {
+            runOnCryptoExecutor(callbackContext, new ActionRunnable(callbackId) {
+                @Override
+                public void runAction() throws JSONException {
+                    scanKeyHealth(arg_object, callbackId);
+                }
+            });
+            return true;
+        } else if (action.equals("reprovision")) {
+            runOnCryptoExecutor(callbackContext, new ActionRunnable(callbackId) {
+                @Override
+                public void runAction() throws JSONException {
+                    reprovision(arg_object, callbackId);
+                }
+            });
+            return true;
+        } else if (action.equals("prepare")) {
+            runOnCryptoExecutor(callbackContext, new ActionRunnable(callbackId) {
+                @Override
+                public void runAction() throws JSONException {
+                    prepare(arg_object, callbackId);
+                }
+            });
+            return true;
+        } else if (action.equals("events")) {
+            // stays open until closeevents, a reload or another subscriber replaces it
+            mEvents.open(callbackContext);
+            return true;
+        } else if (action.equals("closeevents")) {
+            mEvents.close();
+            callbackContext.success();
+            return true;
+        } else if (action.equals("cancel")) {
+            // cancels the headless scan of the request with "callbackId", or every headless
+            // scan without one; the requests complete as cancelled
+            final String targetId = arg_object.optString("callbackId", null);
+            cordova.getActivity().runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    if (targetId != null) {
+                        cancelHeadlessScan(targetId);
                     } else {
-                        locale.descText = "설명";
-                        locale.titleText = "타이틀";
-                        locale.cancelText = "취소";
+                        cancelHeadlessScans();
                     }
-                    scanner.setLocale(locale);
-                    int waitTime = arg_object.getJSONObject("locale").getInt("locktime");
-
-                    scanner.startLock(new FingerprintScanner.Callback() {
-                        @Override
-                        public void onSuccess(String privateKey) {
-                            try {
-                                JSONObject resultJson = new JSONObject();
-                                resultJson.put("status", "ok");
-                                resultJson.put("key", privateKey);
-                                mPluginResult = new PluginResult(PluginResult.Status.OK);
-                                mCallbackContext.success(resultJson);
-                                mCallbackContext.sendPluginResult(mPluginResult);
-                            } catch (Exception e) {
-                                e.printStackTrace();
-                            }
-                        }
-                        @Override
-                        public void onError(int errCode, int attempts) {
-                            try {
-                                JSONObject resultJson = new JSONObject();
-                                resultJson.put("status", "error");
-                                resultJson.put("error", errCode);
-                                mPluginResult = new PluginResult(PluginResult.Status.OK);
-                                mCallbackContext.success(resultJson);
-                                mCallbackContext.sendPluginResult(mPluginResult);
-                            } catch (Exception e) {
-                                e.printStackTrace();
-                            }
-                        }
-
-                        @Override
-                        public void onCancel() {
-                            try {
-                                JSONObject resultJson = new JSONObject();
-                                resultJson.put("status", "cancelled");
-                                mPluginResult = new PluginResult(PluginResult.Status.OK);
-                                mCallbackContext.success(resultJson);
-                                mCallbackContext.sendPluginResult(mPluginResult);
-                            } catch (Exception e) {
-                                e.printStackTrace();
-                            }
-                        }
-                    }, waitTime);
-                } catch (IOException e) {   
-                    e.printStackTrace();
-                    JSONObject resultJson = new JSONObject();
-                    resultJson.put("status", "error");
-                    resultJson.put("error", "Failed to generate key");
-                    mPluginResult = new PluginResult(PluginResult.Status.OK);
-                    mCallbackContext.success(resultJson);
-                    mCallbackContext.sendPluginResult(mPluginResult); 
                 }
+            });
+            callbackContext.success();
             return true;
-        } else if (action.equals("initkey")) {
-            if (!arg_object.has("keyId")) {
-                mPluginResult = new PluginResult(PluginResult.Status.ERROR);
-                mCallbackContext.error("Missing required parameters");
-                mCallbackContext.sendPluginResult(mPluginResult);
+        } else if (action.equals("warmup")) {
+            // inflates the dialogs while the UI thread is idle, ahead of the first scan
+            cordova.getActivity().runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    DialogViewCache.warmUp(cordova.getActivity());
+                }
+            });
+            callbackContext.success();
+            return true;
+        } else if (action.equals("registerlocale")) {
+            // later calls pass only the localeId instead of the whole bundle
+            if (!arg_object.has("localeId") || !arg_object.has("locale")) {
+                callbackContext.error("Missing required parameters");
                 return true;
             }
-            FingerprintScanner scanner = new FingerprintScanner(cordova.getActivity(), arg_object.getString("keyId"));
+            mLocales.register(arg_object.getString("localeId"), arg_object.getJSONObject("locale"));
+            callbackContext.success();
+            return true;
+        } else if (action.equals("configurecache")) {
+            // ttl in seconds; a ttl or maxEntries of 0 disables the cache
+            mSeedCache.configure(arg_object.optLong("ttl", 0) * 1000, arg_object.optInt("maxEntries", 0));
+            callbackContext.success(mSeedCache.toJson());
+            return true;
+        } else if (action.equals("availability")) {
+            if (mAvailability.isFresh()) {
+                callbackContext.success(mAvailability.toJson());
+                return true;
+            }
+            runOnCryptoExecutor(callbackContext, new ActionRunnable(callbackId) {
+                @Override
+                public void runAction() throws JSONException {
+                    availability(callbackId);
+                }
+            });
+            return true;
+        } else if (action.equals("getmetrics")) {
+            JSONObject resultJson = Metrics.toJson();
+            if (arg_object.optBoolean("reset", false)) {
+                Metrics.reset();
+            }
+            callbackContext.success(resultJson);
+            return true;
+        } else if (action.equals("exporttrace")) {
+            String trace = TraceLog.export();
+            if (arg_object.optBoolean("clear", false)) {
+                TraceLog.clear();
+            }
+            callbackContext.success(trace);
+            return true;
+        } else if (action.equals("stats")) {
+            JSONObject resultJson = new JSONObject();
+            resultJson.put("executor", mCryptoExecutor.toJson());
+            resultJson.put("pendingRequests", mRequests.size());
+            resultJson.put("prepared", mPreparedMacCache.toJson());
+            resultJson.put("seedCache", mSeedCache.toJson());
+            resultJson.put("dialog", DialogViewCache.toJson());
+            resultJson.put("availabilityRefreshes", mAvailability.getRefreshes());
+            callbackContext.success(resultJson);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void onReset() {
+        cancelHeadlessScans();
+        mRequests.cancelAll("Request cancelled");
+        mEvents.close();
+        super.onReset();
+    }
+
+    @Override
+    public void onResume(boolean multitasking) {
+        // fingerprints may have been enrolled or removed while the app was in the background
+        mAvailability.invalidate();
+        super.onResume(multitasking);
+    }
+
+    @Override
+    public void onPause(boolean multitasking) {
+        mSeedCache.clear();
+        super.onPause(multitasking);
+    }
+
+    @Override
+    public void onDestroy() {
+        cordova.getActivity().unregisterReceiver(mScreenOffReceiver);
+        mSeedCache.clear();
+        DialogViewCache.clear();
+        FingerprintAuthenticationDialogFragment.clearRecycled();
+        FingerprintAuthenticationLockDialogFragment.clearRecycled();
+        cancelHeadlessScans();
+        mRequests.cancelAll("Request cancelled");
+        mEvents.close();
+        mPreparedMacCache.clear();
+        mAuthSession.clear();
+        mCryptoExecutor.shutdown();
+        super.onDestroy();
+    }
+
+    /**
+     * Body of an action that runs off the bridge thread. Any JSONException or
+     * RuntimeException is reported back to the request the action belongs to.
+     */
+    private abstract class ActionRunnable implements Runnable {
+        private final String callbackId;
+
+        ActionRunnable(String callbackId) {
+            this.callbackId = callbackId;
+        }
+
+        public abstract void runAction() throws JSONException;
+
+        @Override
+        public void run() {
+            try {
+                runAction();
+            } catch (JSONException e) {
+                Log.e(TAG, "Failed to run action", e);
+                sendError(callbackId, "Invalid parameters");
+            } catch (RuntimeException e) {
+                // off the bridge thread nothing else would catch it, and the request would
+                // never complete
+                Log.e(TAG, "Failed to run action", e);
+                sendError(callbackId, "Failed to run action");
+            }
+        }
+    }
+
+    private void keepCallback(CallbackContext callbackContext) {
+        mRequests.register(callbackContext);
+        mRequests.update(callbackContext.getCallbackId(),
+                new PluginResult(PluginResult.Status.NO_RESULT));
+    }
+
+    private void runOnUiThread(CallbackContext callbackContext, ActionRunnable runnable) {
+        keepCallback(callbackContext);
+        cordova.getActivity().runOnUiThread(runnable);
+    }
 
-            if (scanner.isFingerprintAvailable()) {
+    private void runOnCryptoExecutor(CallbackContext callbackContext, ActionRunnable runnable) {
+        keepCallback(callbackContext);
+        if (!mCryptoExecutor.execute(runnable)) {
+            sendError(callbackContext.getCallbackId(), "Too many pending requests");
+        }
+    }
+
+    private void cancelHeadlessScan(String callbackId) {
+        FingerprintScanner scanner = mHeadlessScanners.remove(callbackId);
+        if (scanner != null) {
+            scanner.cancel();
+        }
+    }
+
+    private void cancelHeadlessScans() {
+        for (String callbackId : mHeadlessScanners.keySet()) {
+            cancelHeadlessScan(callbackId);
+        }
+    }
+
+    private void sendResult(String callbackId, JSONObject resultJson) {
+        mRequests.finish(callbackId, new PluginResult(PluginResult.Status.OK, resultJson));
+    }
+
+    private void sendError(String callbackId, String message) {
+        mRequests.finish(callbackId, new PluginResult(PluginResult.Status.ERROR, message));
+    }
+
+    /**
+     * Scanner callback bound to a single request, so results can never reach another caller.
+     */
+    private class ResultCallback implements FingerprintScanner.Callback, FingerprintScanner.SeedsCallback,
+            FingerprintScanner.BytesCallback, FingerprintScanner.EventListener {
+        private final String callbackId;
+        private final FingerprintScanner scanner;
+        private final long startedAt = System.nanoTime();
+        private long lastEventAt = startedAt;
+        // headless requests also get started, help and failed events as intermediate results
+        private boolean streamEvents;
+        // results are sent as an ArrayBuffer, see sendBinary
+        private boolean binary;
+
+        ResultCallback(String callbackId) {
+            this(callbackId, null);
+        }
+
+        /**
+         * Also reports the elapsed time and the path the scanner took with every result.
+         */
+        ResultCallback(String callbackId, FingerprintScanner scanner) {
+            this.callbackId = callbackId;
+            this.scanner = scanner;
+        }
+
+        private void send(JSONObject resultJson) throws JSONException {
+            if (scanner != null) {
+                resultJson.put("path", scanner.getAuthPath());
+                resultJson.put("elapsed", (System.nanoTime() - startedAt) / 1000000);
+            }
+            forgetHeadlessScan();
+            sendResult(callbackId, resultJson);
+            Metrics.record(Metrics.REQUEST, System.nanoTime() - startedAt);
+        }
+
+        private void forgetHeadlessScan() {
+            if (scanner != null) {
+                mHeadlessScanners.remove(callbackId, scanner);
+            }
+        }
+
+        /**
+         * Sends the result as a single ArrayBuffer, see {@link BinaryResult}.
+         */
+        private void sendBinary(int status, int errCode, int attempts, byte[] seed) {
+            byte[] data = BinaryResult.encode(status, errCode, attempts, seed);
+            // the result keeps its own encoded copy
+            PluginResult result = new PluginResult(PluginResult.Status.OK, data);
+            Arrays.fill(data, (byte) 0);
+            forgetHeadlessScan();
+            mRequests.finish(callbackId, result);
+            Metrics.record(Metrics.REQUEST, System.nanoTime() - startedAt);
+        }
+
+        /**
+         * Pushes the event to the event channel, with the time since the request started and
+         * since the previous event of this request.
+         */
+        private void sendEvent(String event, JSONObject eventJson) throws JSONException {
+            long now = System.nanoTime();
+            eventJson.put("event", event);
+            eventJson.put("callbackId", callbackId);
+            eventJson.put("keyId", scanner != null ? scanner.getKeyID() : null);
+            eventJson.put("elapsed", (now - startedAt) / 1000000);
+            eventJson.put("sinceLast", (now - lastEventAt) / 1000000);
+            lastEventAt = now;
+            mEvents.emit(eventJson);
+            if (streamEvents && (event.equals("started") || event.equals("help") || event.equals("failed"))) {
+                eventJson.put("status", event);
+                mRequests.update(callbackId, new PluginResult(PluginResult.Status.OK, eventJson));
+            }
+        }
+
+        private void eventFailed(String event, JSONException e) {
+            Log.e(TAG, "Failed to send " + event + " event", e);
+            trace(TraceLog.CALLBACK_ERROR, 0, 0);
+        }
+
+        /**
+         * Fails the request when its result could not be built, so it still completes.
+         */
+        private void resultFailed(JSONException e) {
+            Log.e(TAG, "Failed to send result", e);
+            trace(TraceLog.CALLBACK_ERROR, 0, 0);
+            forgetHeadlessScan();
+            sendError(callbackId, "Failed to build result");
+        }
+
+        private void trace(int op, int errCode, int attempts) {
+            TraceLog.write(op, scanner != null ? scanner.getKeyID() : null, errCode, attempts,
+                    System.nanoTime() - startedAt);
+        }
+
+        private boolean wantsEvents() {
+            return streamEvents || mEvents.isOpen();
+        }
+
+        @Override
+        public void onStarted() {
+            trace(TraceLog.SCAN_STARTED, 0, 0);
+            if (!wantsEvents()) {
+                return;
+            }
+            try {
+                sendEvent("started", new JSONObject());
+            } catch (JSONException e) {
+                eventFailed("started", e);
+            }
+        }
+
+        @Override
+        public void onHelp(int helpCode, String helpString) {
+            trace(TraceLog.HELP, helpCode, 0);
+            if (!wantsEvents()) {
+                return;
+            }
+            try {
+                JSONObject eventJson = new JSONObject();
+                eventJson.put("code", helpCode);
+                eventJson.put("message", helpString);
+                sendEvent("help", eventJson);
+            } catch (JSONException e) {
+                eventFailed("help", e);
+            }
+        }
+
+        private void clearLockout() {
+            if (scanner != null) {
+                mLockouts.clear(scanner.getKeyID());
+            }
+        }
+
+        @Override
+        public void onFailed(int attempts) {
+            trace(TraceLog.FAILED, 0, attempts);
+            if (scanner != null) {
+                mLockouts.recordFailure(scanner.getKeyID());
+            }
+            if (!wantsEvents()) {
+                return;
+            }
+            try {
+                JSONObject eventJson = new JSONObject();
+                eventJson.put("attempts", attempts);
+                sendEvent("failed", eventJson);
+            } catch (JSONException e) {
+                eventFailed("failed", e);
+            }
+        }
+
+        @Override
+        public void onAuthenticationError(int errCode, int attempts) {
+            trace(TraceLog.AUTH_ERROR, errCode, attempts);
+            if (errCode == 7 && scanner != null) {
+                mLockouts.lock(scanner.getKeyID(), SENSOR_LOCKOUT_MILLIS);
+            }
+            if (!wantsEvents()) {
+                return;
+            }
+            try {
+                JSONObject eventJson = new JSONObject();
+                eventJson.put("code", errCode);
+                eventJson.put("attempts", attempts);
+                // 7 is FINGERPRINT_ERROR_LOCKOUT
+                sendEvent(errCode == 7 ? "lockedout" : "error", eventJson);
+            } catch (JSONException e) {
+                eventFailed("error", e);
+            }
+        }
+
+        @Override
+        public void onSucceeded() {
+            trace(TraceLog.SUCCEEDED, 0, 0);
+            if (!wantsEvents()) {
+                return;
+            }
+            try {
+                sendEvent("succeeded", new JSONObject());
+            } catch (JSONException e) {
+                eventFailed("succeeded", e);
+            }
+        }
+
+        @Override
+        public void onSuccess(String privateKey) {
+            trace(TraceLog.RESULT_OK, 0, 0);
+            clearLockout();
+            try {
+                JSONObject resultJson = new JSONObject();
+                resultJson.put("status", "ok");
+                resultJson.put("key", privateKey);
+                send(resultJson);
+            } catch (JSONException e) {
+                resultFailed(e);
+            }
+        }
+
+        @Override
+        public void onSuccess(byte[] seed) {
+            trace(TraceLog.RESULT_OK, 0, 0);
+            clearLockout();
+            sendBinary(BinaryResult.STATUS_OK, 0, 0, seed);
+            Arrays.fill(seed, (byte) 0);
+        }
+
+        @Override
+        public void onSuccess(Map<String, String> seeds) {
+            trace(TraceLog.RESULT_OK, 0, 0);
+            clearLockout();
+            try {
+                JSONObject resultJson = new JSONObject();
+                resultJson.put("status", "ok");
+                resultJson.put("keys", new JSONObject(seeds));
+                send(resultJson);
+            } catch (JSONException e) {
+                resultFailed(e);
+            }
+        }
+
+        @Override
+        public void onError(int errCode, int attempts) {
+            trace(TraceLog.RESULT_ERROR, errCode, attempts);
+            // an invalidated key, unavailable hardware or no enrolled fingerprints mean the
+            // snapshot may be out of date
+            if (errCode == -314 || errCode == ERROR_HW_UNAVAILABLE || errCode == ERROR_NO_FINGERPRINTS) {
+                mAvailability.invalidate();
+            }
+            if (binary) {
+                sendBinary(BinaryResult.STATUS_ERROR, errCode, attempts, null);
+                return;
+            }
+            try {
+                JSONObject resultJson = new JSONObject();
+                resultJson.put("status", "error");
+                resultJson.put("error", errCode);
+                resultJson.put("attempts", attempts);
+                send(resultJson);
+            } catch (JSONException e) {
+                resultFailed(e);
+            }
+        }
+
+        /**
+         * Fails the request because fingerprint authentication cannot be used, reporting
+         * which part is missing.
+         */
+        public void onUnavailable() {
+            trace(TraceLog.RESULT_ERROR, ERROR_NOT_AVAILABLE, 0);
+            if (binary) {
+                sendBinary(BinaryResult.STATUS_ERROR, ERROR_NOT_AVAILABLE, 0, null);
+                return;
+            }
+            try {
+                JSONObject resultJson = new JSONObject();
+                resultJson.put("status", "error");
+                resultJson.put("error", ERROR_NOT_AVAILABLE);
+                resultJson.put("availability", mAvailability.toJson());
+                send(resultJson);
+            } catch (JSONException e) {
+                resultFailed(e);
+            }
+        }
+
+        @Override
+        public void onCancel() {
+            trace(TraceLog.RESULT_CANCELLED, 0, 0);
+            if (binary) {
+                sendBinary(BinaryResult.STATUS_CANCELLED, 0, 0, null);
+                return;
+            }
+            try {
+                JSONObject resultJson = new JSONObject();
+                resultJson.put("status", "cancelled");
+                send(resultJson);
+            } catch (JSONException e) {
+                resultFailed(e);
+            }
+        }
+    }
+
+    private void sendStatusError(String callbackId, String error) throws JSONException {
+        JSONObject resultJson = new JSONObject();
+        resultJson.put("status", "error");
+        resultJson.put("error", error);
+        sendResult(callbackId, resultJson);
+    }
+
+    private static FingerprintScanner.Timing parseTiming(final JSONObject arg_object) {
+        FingerprintScanner.Timing timing = new FingerprintScanner.Timing();
+        timing.successDelayMillis = arg_object.optLong("successDelay", timing.successDelayMillis);
+        timing.errorDelayMillis = arg_object.optLong("errorDelay", timing.errorDelayMillis);
+        timing.fast = arg_object.optBoolean("fast", timing.fast);
+        return timing;
+    }
+
+    /**
+     * Starts a single-seed scan; with "format": "binary" set on the callback the result is
+     * sent as an ArrayBuffer carrying the raw seed instead of JSON.
+     */
+    private void startScan(FingerprintScanner scanner, ResultCallback callback) throws IOException {
+        if (callback.binary) {
+            scanner.startScanBytes(callback);
+        } else {
+            scanner.startScan(callback);
+        }
+    }
+
+    /**
+     * Reports the scan's progress to the event channel. With "headless" set the scan runs
+     * without the plugin's dialog and also streams started, help and failed events, which
+     * carry the callbackId {@link #cancelHeadlessScan} takes, to the request.
+     */
+    private void bindEvents(final JSONObject arg_object, FingerprintScanner scanner, ResultCallback callback) {
+        scanner.setEventListener(callback);
+        if (arg_object.optBoolean("headless", false)) {
+            scanner.setHeadless(true);
+            callback.streamEvents = true;
+            mHeadlessScanners.put(callback.callbackId, scanner);
+        }
+    }
+
+    /**
+     * Fails the request with a lockout error, without a dialog or keystore access, if the
+     * key is locked. Returns true if the request was rejected.
+     */
+    private boolean rejectIfLocked(String keyId, String callbackId) throws JSONException {
+        long remaining = mLockouts.remainingMillis(keyId);
+        if (remaining == 0) {
+            return false;
+        }
+        JSONObject resultJson = new JSONObject();
+        resultJson.put("status", "error");
+        resultJson.put("error", 7);
+        resultJson.put("attempts", mLockouts.getFailures(keyId));
+        resultJson.put("lockedFor", remaining);
+        sendResult(callbackId, resultJson);
+        return true;
+    }
+
+    private void lock(final JSONObject arg_object, String callbackId) throws JSONException {
+        FingerprintScanner scanner = new FingerprintScanner(cordova.getActivity(), null, mKeyStoreHolder, mAvailability);
+        try {
+            scanner.setLocale(mLocales.resolve(arg_object));
+            int waitTime = arg_object.has("locktime")
+                    ? arg_object.getInt("locktime")
+                    : arg_object.getJSONObject("locale").getInt("locktime");
+
+            final String keyId = arg_object.optString("keyId", null);
+            final ResultCallback callback = new ResultCallback(callbackId);
+            if (keyId == null) {
+                scanner.startLock(callback, waitTime);
+                return;
+            }
+            // a lockout persisted before the process died resumes with the time that is left
+            long remaining = mLockouts.remainingMillis(keyId);
+            if (remaining > 0) {
+                waitTime = (int) ((remaining + 999) / 1000);
+            } else {
+                mLockouts.lock(keyId, waitTime * 1000L);
+            }
+            scanner.startLock(new FingerprintScanner.Callback() {
+                @Override
+                public void onSuccess(String privateKey) {
+                    mLockouts.clear(keyId);
+                    callback.onSuccess(privateKey);
+                }
+
+                @Override
+                public void onError(int errCode, int attempts) {
+                    callback.onError(errCode, attempts);
+                }
+
+                @Override
+                public void onCancel() {
+                    callback.onCancel();
+                }
+            }, waitTime);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to start lock", e);
+            TraceLog.write(TraceLog.KEYSTORE_ERROR, scanner.getKeyID(), 0, 0, 0);
+            sendStatusError(callbackId, "Failed to generate key");
+        }
+    }
+
+    private void initKey(final JSONObject arg_object, String callbackId) throws JSONException {
+        if (!arg_object.has("keyId")) {
+            sendError(callbackId, "Missing required parameters");
+            return;
+        }
+        FingerprintScanner scanner = new FingerprintScanner(cordova.getActivity(), arg_object.getString("keyId"), mKeyStoreHolder, mAvailability);
+
+        // checked here rather than with a separate availability call from JS
+        ResultCallback callback = new ResultCallback(callbackId, scanner);
+        callback.binary = "binary".equals(arg_object.optString("format"));
+        if (scanner.isFingerprintAvailable()) {
+            try {
+                int validity = arg_object.optInt("validity", 0);
+                scanner.generateSeed(validity);
+                mAuthSession.expire(arg_object.getString("keyId"));
+                mSeedCache.remove(arg_object.getString("keyId"));
+                // a Mac prepared for the previous key would fail after the scan
+                mPreparedMacCache.remove(arg_object.getString("keyId"));
+
+                scanner.setLocale(mLocales.resolve(arg_object));
+                scanner.setTiming(parseTiming(arg_object));
+                scanner.setAuthSession(mAuthSession);
+
+                scanner.setEventListener(callback);
+                startScan(scanner, callback);
+            } catch (IOException e) {
+                sendStatusError(callbackId, "Failed to generate key");
+            }
+        } else {
+            callback.onUnavailable();
+        }
+    }
+
+    private void fetchKey(final JSONObject arg_object, String callbackId) throws JSONException {
+        if (!arg_object.has("keyId")) {
+            sendError(callbackId, "Missing required parameters");
+            return;
+        }
+        if (rejectIfLocked(arg_object.getString("keyId"), callbackId)) {
+            return;
+        }
+        FingerprintScanner scanner = new FingerprintScanner(cordova.getActivity(), arg_object.getString("keyId"), mKeyStoreHolder, mAvailability);
+        scanner.setPreparedMacCache(mPreparedMacCache);
+
+        ResultCallback callback = new ResultCallback(callbackId, scanner);
+        callback.binary = "binary".equals(arg_object.optString("format"));
+        if (scanner.isFingerprintAvailable()) {
+            try {
+                scanner.setLocale(mLocales.resolve(arg_object));
+                scanner.setTiming(parseTiming(arg_object));
+                scanner.setAuthSession(mAuthSession);
+                scanner.setSeedCache(mSeedCache);
+                scanner.setSeedEncoding(arg_object.optString("encoding", FingerprintScanner.ENCODING_HEX));
+
+                bindEvents(arg_object, scanner, callback);
+                startScan(scanner, callback);
+            } catch (IOException e) {
+                sendStatusError(callbackId, "Failed to generate key");
+            }
+        } else {
+            callback.onUnavailable();
+        }
+    }
+
+    /**
+     * Authenticates once with the key and returns a seed for every label, see
+     * {@link FingerprintScanner#deriveSeeds}.
+     */
+    private void fetchKeys(final JSONObject arg_object, String callbackId) throws JSONException {
+        if (!arg_object.has("keyId") || !arg_object.has("labels")) {
+            sendError(callbackId, "Missing required parameters");
+            return;
+        }
+        JSONArray labelArray = arg_object.getJSONArray("labels");
+        String[] labels = new String[labelArray.length()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = labelArray.getString(i);
+        }
+        if (rejectIfLocked(arg_object.getString("keyId"), callbackId)) {
+            return;
+        }
+        FingerprintScanner scanner = new FingerprintScanner(cordova.getActivity(), arg_object.getString("keyId"), mKeyStoreHolder, mAvailability);
+        scanner.setPreparedMacCache(mPreparedMacCache);
+
+        ResultCallback callback = new ResultCallback(callbackId, scanner);
+        if (scanner.isFingerprintAvailable()) {
+            try {
+                scanner.setLocale(mLocales.resolve(arg_object));
+                scanner.setTiming(parseTiming(arg_object));
+                scanner.setAuthSession(mAuthSession);
+                scanner.setSeedCache(mSeedCache);
+                scanner.setSeedEncoding(arg_object.optString("encoding", FingerprintScanner.ENCODING_HEX));
+                bindEvents(arg_object, scanner, callback);
+                scanner.startScan(labels, callback);
+            } catch (IOException e) {
+                sendStatusError(callbackId, "Failed to generate key");
+            }
+        } else {
+            callback.onUnavailable();
+        }
+    }
+
+    private static JSONObject keyResult(String keyId, String status, String error) throws JSONException {
+        JSONObject keyJson = new JSONObject();
+        keyJson.put("keyId", keyId);
+        keyJson.put("status", status);
+        if (error != null) {
+            keyJson.put("error", error);
+        }
+        return keyJson;
+    }
+
+    private void sendBatchResult(String callbackId, JSONArray results, boolean allOk) throws JSONException {
+        JSONObject resultJson = new JSONObject();
+        resultJson.put("status", allOk ? "ok" : "error");
+        resultJson.put("results", results);
+        sendResult(callbackId, resultJson);
+    }
+
+    /**
+     * Generates keys for every keyId in one call. With "atomic" set, nothing is generated if
+     * any of the keys already exists, since regenerating it would destroy the existing key,
+     * and a failure removes the keys already generated by this batch; otherwise the remaining
+     * keys are still attempted and existing keys are replaced.
+     */
+    private void initKeys(final JSONObject arg_object, String callbackId) throws JSONException {
+        if (!arg_object.has("keyIds")) {
+            sendError(callbackId, "Missing required parameters");
+            return;
+        }
+        JSONArray keyIds = arg_object.getJSONArray("keyIds");
+        boolean atomic = arg_object.optBoolean("atomic", false);
+        int validity = arg_object.optInt("validity", 0);
+
+        FingerprintScanner scanner = new FingerprintScanner(cordova.getActivity(), null, mKeyStoreHolder, mAvailability);
+        if (!scanner.isFingerprintAvailable()) {
+            sendStatusError(callbackId, "Fingerprint authentication not available");
+            return;
+        }
+
+        JSONArray results = new JSONArray();
+        boolean allOk = true;
+        if (atomic) {
+            for (int i = 0; i < keyIds.length(); i++) {
+                String keyId = keyIds.getString(i);
                 try {
-                    scanner.generateSeed();
-                    
-                    // try to register
-                    FingerprintScanner.Locale locale = new FingerprintScanner.Locale();
-                    if (arg_object.has("locale")) {
-                        locale.descText = arg_object.getJSONObject("locale").getString("desc");//"설명";
-                        locale.cancelText = arg_object.getJSONObject("locale").getString("cancel");//"취소";
-                        locale.titleText = arg_object.getJSONObject("locale").getString("title");//"타이틀";
-                        locale.hintText = arg_object.getJSONObject("locale").getString("hint");//"지문";
-                        locale.successText = arg_object.getJSONObject("locale").getString("success");//"인식성공";
-                        locale.notRecognizedText = arg_object.getJSONObject("locale").getString("notrecognized");//"인식실패";
-                        locale.tooManyTries = arg_object.getJSONObject("locale").getString("toomanytries");//"인식실패";
+                    if (FingerprintScanner.containsSeed(mKeyStoreHolder, keyId)) {
+                        allOk = false;
+                        results.put(keyResult(keyId, "error", "Key already exists"));
                     } else {
-                        locale.descText = "설명";
-                        locale.cancelText = "취소";
-                        locale.titleText = "타이틀";
-                        locale.hintText = "지문";
-                        locale.successText = "인식성공";
-                        locale.notRecognizedText = "인식실패";
-                        locale.tooManyTries = "연속으로 지문 인증을 실패하였습니다. 잠시 후 다시 이용해 주시기 바랍니다";
+                        results.put(keyResult(keyId, "skipped", null));
                     }
-                    scanner.setLocale(locale);
-
-                    scanner.startScan(new FingerprintScanner.Callback() {
-                        @Override
-                        public void onSuccess(String privateKey) {
-                            try {
-                                JSONObject resultJson = new JSONObject();
-                                resultJson.put("status", "ok");
-                                resultJson.put("key", privateKey);
-                                mPluginResult = new PluginResult(PluginResult.Status.OK);
-                                mCallbackContext.success(resultJson);
-                                mCallbackContext.sendPluginResult(mPluginResult);
-                            } catch (Exception e) {
-                                e.printStackTrace();
-                            }
-                        }
-
-                        @Override
-                        public void onError(int errCode, int attempts) {
-                            try {
-                                JSONObject resultJson = new JSONObject();
-                                resultJson.put("status", "error");
-                                resultJson.put("error", errCode);
-                                resultJson.put("attempts", attempts);
-                                mPluginResult = new PluginResult(PluginResult.Status.OK);
-                                mCallbackContext.success(resultJson);
-                                mCallbackContext.sendPluginResult(mPluginResult);
-                            } catch (Exception e) {
-                                e.printStackTrace();
-                            }
-                        }
-
-                        @Override
-                        public void onCancel() {
-                            try {
-                                JSONObject resultJson = new JSONObject();
-                                resultJson.put("status", "cancelled");
-                                mPluginResult = new PluginResult(PluginResult.Status.OK);
-                                mCallbackContext.success(resultJson);
-                                mCallbackContext.sendPluginResult(mPluginResult);
-                            } catch (Exception e) {
-                                e.printStackTrace();
-                            }
-                        }
-                    });
-                } catch (IOException e) {   
-                    JSONObject resultJson = new JSONObject();
-                    resultJson.put("status", "error");
-                    resultJson.put("error", "Failed to generate key");
-                    mPluginResult = new PluginResult(PluginResult.Status.OK);
-                    mCallbackContext.success(resultJson);
-                    mCallbackContext.sendPluginResult(mPluginResult); 
+                } catch (IOException e) {
+                    allOk = false;
+                    results.put(keyResult(keyId, "error", "Failed to access keystore"));
                 }
-            } else {
-                JSONObject resultJson = new JSONObject();
-                resultJson.put("status", "error");
-                resultJson.put("error", "Fingerprint authentication not available");
-                mPluginResult = new PluginResult(PluginResult.Status.OK);
-                mCallbackContext.success(resultJson);
-                mCallbackContext.sendPluginResult(mPluginResult);
             }
-            return true;
-
+            if (!allOk) {
+                sendBatchResult(callbackId, results, false);
+                return;
+            }
+            results = new JSONArray();
+        }
 
-        } else if (action.equals("fetchkey")) {
+        for (int i = 0; i < keyIds.length(); i++) {
+            String keyId = keyIds.getString(i);
+            if (!allOk && atomic) {
+                results.put(keyResult(keyId, "skipped", null));
+                continue;
+            }
+            try {
+                FingerprintScanner.generateSeed(mKeyStoreHolder, keyId, validity);
+                mPreparedMacCache.remove(keyId);
+                mAuthSession.expire(keyId);
+                mSeedCache.remove(keyId);
+                results.put(keyResult(keyId, "ok", null));
+            } catch (IOException e) {
+                allOk = false;
+                results.put(keyResult(keyId, "error", "Failed to generate key"));
+            }
+        }
 
-            if (!arg_object.has("keyId")) {
-                mPluginResult = new PluginResult(PluginResult.Status.ERROR);
-                mCallbackContext.error("Missing required parameters");
-                mCallbackContext.sendPluginResult(mPluginResult);
-                return true;
+        if (!allOk && atomic) {
+            for (int i = 0; i < results.length(); i++) {
+                JSONObject keyJson = results.getJSONObject(i);
+                if (!keyJson.getString("status").equals("ok")) {
+                    continue;
+                }
+                try {
+                    FingerprintScanner.removeSeed(mKeyStoreHolder, keyJson.getString("keyId"));
+                    keyJson.put("status", "rolledback");
+                } catch (IOException e) {
+                    keyJson.put("status", "error");
+                    keyJson.put("error", "Failed to roll back key");
+                }
             }
-            FingerprintScanner scanner = new FingerprintScanner(cordova.getActivity(), arg_object.getString("keyId"));
+        }
+        sendBatchResult(callbackId, results, allOk);
+    }
+
+    /**
+     * Removes keys for every keyId in one call. With "atomic" set, nothing is removed unless
+     * every key exists, since a removed key cannot be restored.
+     */
+    private void removeKeys(final JSONObject arg_object, String callbackId) throws JSONException {
+        if (!arg_object.has("keyIds")) {
+            sendError(callbackId, "Missing required parameters");
+            return;
+        }
+        JSONArray keyIds = arg_object.getJSONArray("keyIds");
+        boolean atomic = arg_object.optBoolean("atomic", false);
 
-            if (scanner.isFingerprintAvailable()) {
+        JSONArray results = new JSONArray();
+        boolean allOk = true;
+        if (atomic) {
+            for (int i = 0; i < keyIds.length(); i++) {
+                String keyId = keyIds.getString(i);
                 try {
-                    // try to register
-                    FingerprintScanner.Locale locale = new FingerprintScanner.Locale();
-                    if (arg_object.has("locale")) {
-                        locale.descText = arg_object.getJSONObject("locale").getString("desc");//"설명";
-                        locale.cancelText = arg_object.getJSONObject("locale").getString("cancel");//"취소";
-                        locale.titleText = arg_object.getJSONObject("locale").getString("title");//"타이틀";
-                        locale.hintText = arg_object.getJSONObject("locale").getString("hint");//"지문";
-                        locale.successText = arg_object.getJSONObject("locale").getString("success");//"인식성공";
-                        locale.notRecognizedText = arg_object.getJSONObject("locale").getString("notrecognized");//"인식실패";
-                        locale.tooManyTries = arg_object.getJSONObject("locale").getString("toomanytries");//"인식실패";
+                    if (FingerprintScanner.containsSeed(mKeyStoreHolder, keyId)) {
+                        results.put(keyResult(keyId, "skipped", null));
                     } else {
-                        locale.descText = "설명";
-                        locale.cancelText = "취소";
-                        locale.titleText = "타이틀";
-                        locale.hintText = "지문";
-                        locale.successText = "인식성공";
-                        locale.notRecognizedText = "인식실패";
-                        locale.tooManyTries = "연속으로 지문 인증을 실패하였습니다. 잠시 후 다시 이용해 주시기 바랍니다";
+                        allOk = false;
+                        results.put(keyResult(keyId, "error", "Key not found"));
                     }
-                    scanner.setLocale(locale);
-
-                    scanner.startScan(new FingerprintScanner.Callback() {
-                        @Override
-                        public void onSuccess(String privateKey) {
-                            try {
-                                JSONObject resultJson = new JSONObject();
-                                resultJson.put("status", "ok");
-                                resultJson.put("key", privateKey);
-                                mPluginResult = new PluginResult(PluginResult.Status.OK);
-                                mCallbackContext.success(resultJson);
-                                mCallbackContext.sendPluginResult(mPluginResult);
-                            } catch (Exception e) {
-                                e.printStackTrace();
-                            }
-                        }
-
-                        @Override
-                        public void onError(int errCode, int attempts) {
-                            try {
-                                JSONObject resultJson = new JSONObject();
-                                resultJson.put("status", "error");
-                                resultJson.put("error", errCode);
-                                resultJson.put("attempts", attempts);
-                                mPluginResult = new PluginResult(PluginResult.Status.OK);
-                                mCallbackContext.success(resultJson);
-                                mCallbackContext.sendPluginResult(mPluginResult);
-                            } catch (Exception e) {
-                                e.printStackTrace();
-                            }
-                        }
-
-                        @Override
-                        public void onCancel() {
-                            try {
-                                JSONObject resultJson = new JSONObject();
-                                resultJson.put("status", "cancelled");
-                                mPluginResult = new PluginResult(PluginResult.Status.OK);
-                                mCallbackContext.success(resultJson);
-                                mCallbackContext.sendPluginResult(mPluginResult);
-                            } catch (Exception e) {
-                                e.printStackTrace();
-                            }
-                        }
-                    });
-                } catch (IOException e) {   
-                    JSONObject resultJson = new JSONObject();
-                    resultJson.put("status", "error");
-                    resultJson.put("error", "Failed to generate key");
-                    mPluginResult = new PluginResult(PluginResult.Status.OK);
-                    mCallbackContext.success(resultJson);
-                    mCallbackContext.sendPluginResult(mPluginResult); 
+                } catch (IOException e) {
+                    allOk = false;
+                    results.put(keyResult(keyId, "error", "Failed to access keystore"));
                 }
+            }
+            if (!allOk) {
+                sendBatchResult(callbackId, results, false);
+                return;
+            }
+            results = new JSONArray();
+        }
+
+        for (int i = 0; i < keyIds.length(); i++) {
+            String keyId = keyIds.getString(i);
+            mPreparedMacCache.remove(keyId);
+            mAuthSession.expire(keyId);
+            mSeedCache.remove(keyId);
+            mLockouts.clear(keyId);
+            try {
+                FingerprintScanner.removeSeed(mKeyStoreHolder, keyId);
+                results.put(keyResult(keyId, "ok", null));
+            } catch (IOException e) {
+                allOk = false;
+                results.put(keyResult(keyId, "error", "Failed to remove key"));
+            }
+        }
+        sendBatchResult(callbackId, results, allOk);
+    }
+
+    private void listKeys(String callbackId) throws JSONException {
+        try {
+            JSONObject resultJson = new JSONObject();
+            resultJson.put("status", "ok");
+            resultJson.put("keys", new JSONArray(mKeyStoreHolder.keys().aliases()));
+            sendResult(callbackId, resultJson);
+        } catch (IOException e) {
+            sendStatusError(callbackId, "Failed to access keystore");
+        }
+    }
+
+    /**
+     * Answers for a single "keyId" or for every id in "keyIds" at once.
+     */
+    private void hasKey(final JSONObject arg_object, String callbackId) throws JSONException {
+        if (!arg_object.has("keyId") && !arg_object.has("keyIds")) {
+            sendError(callbackId, "Missing required parameters");
+            return;
+        }
+        try {
+            KeyRegistry keys = mKeyStoreHolder.keys();
+            JSONObject resultJson = new JSONObject();
+            resultJson.put("status", "ok");
+            if (arg_object.has("keyId")) {
+                resultJson.put("exists", keys.contains(arg_object.getString("keyId")));
             } else {
-                JSONObject resultJson = new JSONObject();
-                resultJson.put("status", "error");
-                resultJson.put("error", "Fingerprint authentication not available");
-                mPluginResult = new PluginResult(PluginResult.Status.OK);
-                mCallbackContext.success(resultJson);
-                mCallbackContext.sendPluginResult(mPluginResult);
+                JSONArray keyIds = arg_object.getJSONArray("keyIds");
+                JSONObject exists = new JSONObject();
+                for (int i = 0; i < keyIds.length(); i++) {
+                    exists.put(keyIds.getString(i), keys.contains(keyIds.getString(i)));
+                }
+                resultJson.put("exists", exists);
             }
-            return true;
-        } else if (action.equals("availability")) {
+            sendResult(callbackId, resultJson);
+        } catch (IOException e) {
+            sendStatusError(callbackId, "Failed to access keystore");
+        }
+    }
+
+    /**
+     * The keyIds given in "keyIds". The plugin uses keyIds as aliases as they are, so the key
+     * store cannot tell its keys from the app's other keys and a list is required.
+     */
+    private String[] healthKeyIds(final JSONObject arg_object) throws JSONException {
+        JSONArray keyIdArray = arg_object.getJSONArray("keyIds");
+        String[] keyIds = new String[keyIdArray.length()];
+        for (int i = 0; i < keyIds.length; i++) {
+            keyIds[i] = keyIdArray.getString(i);
+        }
+        return keyIds;
+    }
+
+    /**
+     * Classifies the given keys as valid, invalidated, missing or foreign in one pass, so
+     * invalidated keys are found at app start instead of on the user's next fetch.
+     */
+    private void scanKeyHealth(final JSONObject arg_object, String callbackId) throws JSONException {
+        if (!arg_object.has("keyIds")) {
+            sendError(callbackId, "Missing required parameters");
+            return;
+        }
+        String[] keyIds = healthKeyIds(arg_object);
+        if (keyIds.length > MAX_HEALTH_KEYS) {
+            sendError(callbackId, "Too many keys");
+            return;
+        }
+        JSONArray results = new JSONArray();
+        boolean allValid = true;
+        boolean anyInvalidated = false;
+        for (String keyId : keyIds) {
+            String health;
             try {
-                FingerprintScanner scanner = new FingerprintScanner(cordova.getActivity(), null);
-                JSONObject resultJson = new JSONObject();
-                resultJson.put("isAvailable", scanner.isFingerprintAvailable());
-                resultJson.put("isHardwareDetected", scanner.isHardwareDetected());
-                resultJson.put("hasEnrolledFingerprints", scanner.hasEnrolledFingerprints());
-                mPluginResult = new PluginResult(PluginResult.Status.OK);
-                mCallbackContext.success(resultJson);
-                mCallbackContext.sendPluginResult(mPluginResult);
-                return true;
-            } catch (Exception e) {
+                health = FingerprintScanner.checkSeed(mKeyStoreHolder, keyId);
+            } catch (IOException e) {
+                allValid = false;
+                results.put(keyResult(keyId, "error", "Failed to access keystore"));
+                continue;
+            }
+            if (!health.equals(FingerprintScanner.HEALTH_VALID)) {
+                allValid = false;
+            }
+            if (health.equals(FingerprintScanner.HEALTH_INVALIDATED)) {
+                anyInvalidated = true;
+            }
+            results.put(keyResult(keyId, health, null));
+        }
+        if (anyInvalidated) {
+            // enrollment probably changed
+            mAvailability.invalidate();
+        }
+        sendBatchResult(callbackId, results, allValid);
+    }
+
+    /**
+     * Regenerates the given keys that are invalidated in one batch, and missing ones too with
+     * "includeMissing". A regenerated key keeps its validity duration unless "validity"
+     * is given.
+     */
+    private void reprovision(final JSONObject arg_object, String callbackId) throws JSONException {
+        if (!arg_object.has("keyIds")) {
+            sendError(callbackId, "Missing required parameters");
+            return;
+        }
+        boolean includeMissing = arg_object.optBoolean("includeMissing", false);
+        String[] keyIds = healthKeyIds(arg_object);
+        if (keyIds.length > MAX_HEALTH_KEYS) {
+            sendError(callbackId, "Too many keys");
+            return;
+        }
+        JSONArray results = new JSONArray();
+        boolean allOk = true;
+        for (String keyId : keyIds) {
+            try {
+                String health = FingerprintScanner.checkSeed(mKeyStoreHolder, keyId);
+                boolean invalidated = health.equals(FingerprintScanner.HEALTH_INVALIDATED);
+                boolean missing = health.equals(FingerprintScanner.HEALTH_MISSING);
+                if (!invalidated && !(missing && includeMissing)) {
+                    results.put(keyResult(keyId, "skipped", null));
+                    continue;
+                }
+                int validity = arg_object.has("validity")
+                        ? arg_object.getInt("validity")
+                        : FingerprintScanner.keyValiditySeconds(mKeyStoreHolder, keyId);
+                if (invalidated) {
+                    FingerprintScanner.removeSeed(mKeyStoreHolder, keyId);
+                }
+                FingerprintScanner.generateSeed(mKeyStoreHolder, keyId, validity);
+                mPreparedMacCache.remove(keyId);
+                mAuthSession.expire(keyId);
+                mSeedCache.remove(keyId);
+                results.put(keyResult(keyId, "ok", null));
+            } catch (IOException e) {
+                allOk = false;
+                results.put(keyResult(keyId, "error", "Failed to regenerate key"));
+            }
+        }
+        sendBatchResult(callbackId, results, allOk);
+    }
+
+    private void prepare(final JSONObject arg_object, String callbackId) throws JSONException {
+        if (!arg_object.has("keyId")) {
+            sendError(callbackId, "Missing required parameters");
+            return;
+        }
+        FingerprintScanner scanner = new FingerprintScanner(cordova.getActivity(), arg_object.getString("keyId"), mKeyStoreHolder, mAvailability);
+        scanner.setPreparedMacCache(mPreparedMacCache);
+        try {
+            if (scanner.prepare()) {
                 JSONObject resultJson = new JSONObject();
-                resultJson.put("isAvailable", false);
-                resultJson.put("isHardwareDetected", false);
-                resultJson.put("hasEnrolledFingerprints", false);
-                mPluginResult = new PluginResult(PluginResult.Status.OK);
-                mCallbackContext.success(resultJson);
-                mCallbackContext.sendPluginResult(mPluginResult);
-            return true;
+                resultJson.put("status", "ok");
+                sendResult(callbackId, resultJson);
+            } else {
+                new ResultCallback(callbackId).onError(-314, 0);
             }
+        } catch (IOException e) {
+            sendStatusError(callbackId, "Failed to prepare key");
         }
-        return false;
     }
 
-    public static boolean setPluginResultError(String errorMessage) {
-        mCallbackContext.error(errorMessage);
-        mPluginResult = new PluginResult(PluginResult.Status.ERROR);
-        return false;
+    private void availability(String callbackId) throws JSONException {
+        sendResult(callbackId, mAvailability.toJson());
     }
-}
\ No newline at end of file
+}
@@ -2,16 +2,26 @@ package com.cordova.plugin.android.fingerprintkey;
 
 import android.app.Activity;
 import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyInfo;
 import android.security.keystore.KeyProperties;
+import android.security.keystore.UserNotAuthenticatedException;
 import android.support.v4.hardware.fingerprint.FingerprintManagerCompat;
+import android.support.v4.os.CancellationSignal;
+import android.util.Base64;
+
 
 import java.io.IOException;
+import java.security.Key;
 import java.security.KeyStore;
 import java.security.ProviderException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.crypto.KeyGenerator;
 import javax.crypto.Mac;
 import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
 
 /**
  * Created by shepelt on 2016. 9. 21..
@@ -20,75 +30,159 @@ import javax.crypto.SecretKey;
 public class FingerprintScanner {
     private final Activity activity;
     private final String keyID;
-    private FingerprintManagerCompat fm;
-    private Locale locale;
-
-    public FingerprintScanner(Activity activity, String keyID) {
+    private final KeyStoreHolder keyStoreHolder;
+    private final AvailabilitySnapshot availability;
+    private final FingerprintManagerCompat fm;
+    private DialogLocale locale;
+    private PreparedMacCache preparedMacCache;
+    private AuthSession authSession;
+    private SeedCache seedCache;
+    private String authPath = PATH_SCAN;
+    private String seedEncoding = ENCODING_HEX;
+    private Timing timing;
+    private boolean headless;
+    private EventListener eventListener;
+    // headless scan in progress, only touched on the UI thread
+    private CancellationSignal headlessSignal;
+    private FingerprintAuthenticationDialogFragment.Callback headlessCallback;
+    // set by cancel, so a scan cancelled before it reached the UI thread never starts
+    private boolean headlessCancelled;
+
+    public static final String ENCODING_HEX = "hex";
+    public static final String ENCODING_BASE64 = "base64";
+
+    public static final String PATH_CACHE = "cache";
+    public static final String PATH_DIRECT = "direct";
+    public static final String PATH_SCAN = "scan";
+    public static final String PATH_HEADLESS = "headless";
+
+    public static final String HEALTH_VALID = "valid";
+    public static final String HEALTH_INVALIDATED = "invalidated";
+    public static final String HEALTH_MISSING = "missing";
+    // an alias that holds something other than a key this plugin generates
+    public static final String HEALTH_FOREIGN = "foreign";
+
+    public FingerprintScanner(Activity activity, String keyID, KeyStoreHolder keyStoreHolder,
+                              AvailabilitySnapshot availability) {
         this.keyID = keyID;
         this.activity = activity;
-        this.fm = FingerprintManagerCompat.from(activity.getApplicationContext());
+        this.keyStoreHolder = keyStoreHolder;
+        this.availability = availability;
+        this.fm = availability.getFingerprintManager();
 
         FingerprintScanner.packageName = this.activity.getApplicationContext().getPackageName();
         FingerprintScanner.mDisableBackup = false;
     }
 
     public boolean isFingerprintAvailable() {
-        return fm.isHardwareDetected()
-                && fm.hasEnrolledFingerprints();
+        return availability.isAvailable();
     }
 
     public boolean isHardwareDetected() {
-        return fm.isHardwareDetected();
+        return availability.isHardwareDetected();
     }
 
     public boolean hasEnrolledFingerprints() {
-        return fm.hasEnrolledFingerprints();
+        return availability.hasEnrolledFingerprints();
     }
 
-
     public static String packageName;
     public static boolean mDisableBackup;
 
     public void generateSeed() throws IOException {
-        generateSeed(this.keyID);
+        generateSeed(this.keyStoreHolder, this.keyID);
     }
 
-    public static void generateSeed(String keyID) throws IOException {
-        KeyStore mKeyStore = null;
-        try {
-            mKeyStore = KeyStore.getInstance("AndroidKeyStore");
-            mKeyStore.load(null);
-        } catch (Exception e) {
-            throw new IOException("Failed to load keystore", e);
-        }
+    public void generateSeed(int validitySeconds) throws IOException {
+        generateSeed(this.keyStoreHolder, this.keyID, validitySeconds);
+    }
+
+    public static void generateSeed(KeyStoreHolder keyStoreHolder, String keyID) throws IOException {
+        generateSeed(keyStoreHolder, keyID, 0);
+    }
 
+    /**
+     * Creates the key. With a positive validitySeconds the key stays usable for that long
+     * after a successful scan instead of requiring a scan for every use.
+     */
+    public static void generateSeed(KeyStoreHolder keyStoreHolder, String keyID, int validitySeconds) throws IOException {
+        // the AndroidKeyStore provider talks to keystore directly, no loaded KeyStore is needed
         KeyGenerator keyGen = null;
+        keyStoreHolder.keys().invalidate();
         try {
-            keyGen = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_HMAC_SHA256, "AndroidKeyStore");
-            keyGen.init(new KeyGenParameterSpec.Builder(keyID, KeyProperties.PURPOSE_SIGN).setUserAuthenticationRequired(true).build());
+            keyGen = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_HMAC_SHA256, KeyStoreHolder.ANDROID_KEY_STORE);
+            KeyGenParameterSpec.Builder builder = new KeyGenParameterSpec.Builder(keyID, KeyProperties.PURPOSE_SIGN).setUserAuthenticationRequired(true);
+            if (validitySeconds > 0) {
+                builder.setUserAuthenticationValidityDurationSeconds(validitySeconds);
+            }
+            keyGen.init(builder.build());
             keyGen.generateKey();
         } catch (Exception e) {
             throw new IOException("Failed to create key", e);
+        } finally {
+            // again after the change, so a listing taken while the key was being created is dropped
+            keyStoreHolder.keys().invalidate();
         }
     }
     public void removeSeed() throws IOException {
-        removeSeed(this.keyID);
+        removeSeed(this.keyStoreHolder, this.keyID);
     }
-    public static void removeSeed(String keyID) throws IOException {
+    public static void removeSeed(KeyStoreHolder keyStoreHolder, String keyID) throws IOException {
+        KeyStore mKeyStore = keyStoreHolder.get();
+        keyStoreHolder.keys().invalidate();
         try {
-            KeyStore mKeyStore = KeyStore.getInstance("AndroidKeyStore");
-            mKeyStore.load(null);
             mKeyStore.deleteEntry(keyID);
         } catch (Exception e) {
+            keyStoreHolder.invalidate();
             throw new IOException("Failed to remove key", e);
+        } finally {
+            keyStoreHolder.keys().invalidate();
         }
     }
 
-    private Mac initCrypto() throws IOException {
+    public static boolean containsSeed(KeyStoreHolder keyStoreHolder, String keyID) throws IOException {
+        return keyStoreHolder.keys().contains(keyID);
+    }
+
+    /**
+     * Classifies the key without a scan: {@link #HEALTH_MISSING} if there is no such key,
+     * {@link #HEALTH_INVALIDATED} if enrollment changes invalidated it, {@link #HEALTH_VALID}
+     * otherwise, and {@link #HEALTH_FOREIGN} for an alias that is not an HMAC key. Initializing
+     * a Mac is enough to tell, the user only has to authenticate for the operation itself.
+     */
+    public static String checkSeed(KeyStoreHolder keyStoreHolder, String keyID) throws IOException {
+        if (!containsSeed(keyStoreHolder, keyID)) {
+            return HEALTH_MISSING;
+        }
+        KeyStore mKeyStore = keyStoreHolder.get();
         try {
-            KeyStore mKeyStore = KeyStore.getInstance("AndroidKeyStore");
-            mKeyStore.load(null);
+            Key key = mKeyStore.getKey(keyID, null);
+            if (key == null) {
+                return HEALTH_MISSING;
+            }
+            if (!(key instanceof SecretKey) || !KeyProperties.KEY_ALGORITHM_HMAC_SHA256.equalsIgnoreCase(key.getAlgorithm())) {
+                return HEALTH_FOREIGN;
+            }
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(key);
+            // init begins a keystore operation; reset aborts it instead of leaving it to be pruned
+            mac.reset();
+            return HEALTH_VALID;
+        } catch (UserNotAuthenticatedException e) {
+            // a time-bound key outside of its window is still usable after a scan
+            return HEALTH_VALID;
+        } catch (android.security.keystore.KeyPermanentlyInvalidatedException e) {
+            TraceLog.write(TraceLog.KEY_INVALIDATED, keyID, -314, 0, 0);
+            return HEALTH_INVALIDATED;
+        } catch (Exception e) {
+            throw new IOException("Failed to access keystore", e);
+        }
+    }
 
+    private Mac initCrypto() throws IOException {
+        KeyStore mKeyStore = keyStoreHolder.get();
+        long startedAt = System.nanoTime();
+        try {
             SecretKey key = (SecretKey) mKeyStore.getKey(keyID, null);
             if (key == null) {
                 return null;
@@ -96,28 +190,35 @@ public class FingerprintScanner {
 
             Mac mac = Mac.getInstance("HmacSHA256");
             mac.init(key);
+            Metrics.record(Metrics.MAC_INIT, System.nanoTime() - startedAt);
             return mac;
+        } catch (UserNotAuthenticatedException e) {
+            throw new AuthenticationRequiredException(e);
         } catch (ProviderException e) {
-            if (e.getCause().getMessage().equals("Key user not authenticated")) {
+            TraceLog.write(TraceLog.KEYSTORE_ERROR, keyID, 0, 0, System.nanoTime() - startedAt);
+            if (e.getCause() != null && "Key user not authenticated".equals(e.getCause().getMessage())) {
                 throw new IOException("Unahutorized to access keystore", e.getCause());
             } else {
                 throw new IOException("Failed to access keystore", e.getCause());
             }
         } catch (android.security.keystore.KeyPermanentlyInvalidatedException e) {
-            System.out.println("key invalidated");
+            keyStoreHolder.invalidate();
+            TraceLog.write(TraceLog.KEY_INVALIDATED, keyID, -314, 0, System.nanoTime() - startedAt);
             return null;
         } catch (Exception e) {
-            e.printStackTrace();
+            TraceLog.write(TraceLog.KEYSTORE_ERROR, keyID, 0, 0, System.nanoTime() - startedAt);
             throw new IOException("Failed to access keystore", e.getCause());
         }
     }
 
     private byte[] fetchSeed(Mac mac) throws IOException {
         try {
+            long startedAt = System.nanoTime();
             byte[] hmacData = mac.doFinal(keyID.getBytes("UTF-8"));
+            Metrics.record(Metrics.SEED, System.nanoTime() - startedAt);
             return hmacData;
         } catch (ProviderException e) {
-            if (e.getCause().getMessage().equals("Key user not authenticated")) {
+            if (e.getCause() != null && "Key user not authenticated".equals(e.getCause().getMessage())) {
                 throw new IOException("Unahutorized to access keystore", e.getCause());
             } else {
                 throw new IOException("Failed to access keystore", e.getCause());
@@ -127,28 +228,120 @@ public class FingerprintScanner {
         }
     }
 
-    public void setLocale(Locale locale) {
+    /**
+     * Derives one seed per label from the authorized seed of this key and encodes them for
+     * the JS side, see {@link SeedDerivation}.
+     */
+    static Map<String, String> deriveSeeds(byte[] master, String[] labels, String encoding) throws IOException {
+        Map<String, String> seeds = new LinkedHashMap<String, String>();
+        for (Map.Entry<String, byte[]> entry : SeedDerivation.derive(master, labels).entrySet()) {
+            seeds.put(entry.getKey(), encodeSeed(entry.getValue(), encoding));
+            Arrays.fill(entry.getValue(), (byte) 0);
+        }
+        return seeds;
+    }
+
+    public void setLocale(DialogLocale locale) {
         this.locale = locale;
     }
 
+    public void setPreparedMacCache(PreparedMacCache preparedMacCache) {
+        this.preparedMacCache = preparedMacCache;
+    }
+
+    public void setAuthSession(AuthSession authSession) {
+        this.authSession = authSession;
+    }
+
+    public void setSeedCache(SeedCache seedCache) {
+        this.seedCache = seedCache;
+    }
+
+    /**
+     * Initializes the Mac for this key ahead of a scan so that {@link #startScan} can show the
+     * dialog right away. Returns false if the key is missing or invalidated.
+     */
+    public boolean prepare() throws IOException {
+        Mac mac;
+        try {
+            mac = this.initCrypto();
+        } catch (AuthenticationRequiredException e) {
+            // time-bound keys are initialized after the scan, there is nothing to prepare
+            return true;
+        }
+        if (mac == null) {
+            return false;
+        }
+        preparedMacCache.put(keyID, mac);
+        return true;
+    }
+
     private static String byteArrayToHex(byte[] ba) {
         if (ba == null || ba.length == 0) {
             return null;
         }
+        return Hex.encode(ba);
+    }
 
-        StringBuffer sb = new StringBuffer(ba.length * 2);
-        String hexNumber;
-        for (int x = 0; x < ba.length; x++) {
-            hexNumber = "0" + Integer.toHexString(0xff & ba[x]);
+    /**
+     * Encodes a seed for the JS side, as hex by default or as Base64 for callers that
+     * want to skip hex parsing.
+     */
+    static String encodeSeed(byte[] seed, String encoding) {
+        if (ENCODING_BASE64.equals(encoding)) {
+            return Base64.encodeToString(seed, Base64.NO_WRAP);
+        }
+        return byteArrayToHex(seed);
+    }
 
-            sb.append(hexNumber.substring(hexNumber.length() - 2));
+    public void setSeedEncoding(String seedEncoding) {
+        this.seedEncoding = seedEncoding;
+    }
+
+    public void setTiming(Timing timing) {
+        this.timing = timing;
+    }
+
+    /**
+     * Authenticates without the plugin's dialog, so the app can render its own prompt from
+     * the events passed to {@link #setEventListener}.
+     */
+    public void setHeadless(boolean headless) {
+        this.headless = headless;
+    }
+
+    /**
+     * Receives the progress of the scan, with or without the dialog.
+     */
+    public void setEventListener(EventListener eventListener) {
+        this.eventListener = eventListener;
+    }
+
+    public String getKeyID() {
+        return keyID;
+    }
+
+    /**
+     * Cancels a headless scan started by this scanner, or one that has not started yet.
+     * Must be called on the UI thread.
+     */
+    public void cancel() {
+        headlessCancelled = true;
+        FingerprintAuthenticationDialogFragment.Callback callback = headlessCallback;
+        headlessCallback = null;
+        if (headlessSignal != null) {
+            headlessSignal.cancel();
+            headlessSignal = null;
+        }
+        if (callback != null) {
+            callback.onCancel();
         }
-        return sb.toString();
     }
 
     public void startLock(final Callback callback, int waitTime) throws IOException {
-        FingerprintAuthenticationLockDialogFragment mFragment = new FingerprintAuthenticationLockDialogFragment();
+        FingerprintAuthenticationLockDialogFragment mFragment = FingerprintAuthenticationLockDialogFragment.obtain();
         mFragment.setLocale(this.locale);
+        mFragment.setAvailability(this.availability);
         mFragment.setCallback(new FingerprintAuthenticationLockDialogFragment.Callback() {
             @Override
             public void onSuccess() {
@@ -169,47 +362,307 @@ public class FingerprintScanner {
         mFragment.show(this.activity.getFragmentManager(), "FpAuthDialog");
     }
 
+    /**
+     * Initializes the crypto object on the calling thread and then shows the dialog on the
+     * UI thread, so this may be called from a background executor.
+     */
     public void startScan(final Callback callback) throws IOException {
-        final Mac mac = this.initCrypto();
+        scan(new SeedReceiver() {
+            @Override
+            public void onSeed(byte[] seed) {
+                String encoded = encodeSeed(seed, seedEncoding);
+                Arrays.fill(seed, (byte) 0);
+                callback.onSuccess(encoded);
+            }
+
+            @Override
+            public void onError(int errCode, int attempts) {
+                callback.onError(errCode, attempts);
+            }
+
+            @Override
+            public void onCancel() {
+                callback.onCancel();
+            }
+        });
+    }
+
+    /**
+     * Like {@link #startScan(Callback)}, but hands over the raw seed bytes instead of an
+     * encoded string. The callback owns the array and should wipe it when done.
+     */
+    public void startScanBytes(final BytesCallback callback) throws IOException {
+        scan(new SeedReceiver() {
+            @Override
+            public void onSeed(byte[] seed) {
+                callback.onSuccess(seed);
+            }
+
+            @Override
+            public void onError(int errCode, int attempts) {
+                callback.onError(errCode, attempts);
+            }
+
+            @Override
+            public void onCancel() {
+                callback.onCancel();
+            }
+        });
+    }
+
+    /**
+     * Like {@link #startScan(Callback)}, but derives a seed for every label from the single
+     * authentication, see {@link #deriveSeeds}.
+     */
+    public void startScan(final String[] labels, final SeedsCallback callback) throws IOException {
+        scan(new SeedReceiver() {
+            @Override
+            public void onSeed(byte[] seed) throws IOException {
+                callback.onSuccess(deriveSeeds(seed, labels, seedEncoding));
+            }
+
+            @Override
+            public void onError(int errCode, int attempts) {
+                callback.onError(errCode, attempts);
+            }
+
+            @Override
+            public void onCancel() {
+                callback.onCancel();
+            }
+        });
+    }
+
+    /**
+     * Which path the last scan took: {@link #PATH_CACHE} when the seed came from the seed
+     * cache, {@link #PATH_DIRECT} when a time-bound key was still unlocked and no dialog was
+     * shown, {@link #PATH_HEADLESS} when the scan ran without a dialog, {@link #PATH_SCAN}
+     * otherwise.
+     */
+    public String getAuthPath() {
+        return authPath;
+    }
+
+    private void scan(final SeedReceiver receiver) throws IOException {
+        byte[] cached = seedCache != null ? seedCache.get(keyID) : null;
+        if (cached != null) {
+            authPath = PATH_CACHE;
+            try {
+                receiver.onSeed(cached);
+            } catch (IOException e) {
+                receiver.onError(-1, 0);
+            }
+            return;
+        }
+
+        if (authSession != null && authSession.isAuthenticated(keyID)) {
+            try {
+                Mac mac = this.initCrypto();
+                if (mac != null) {
+                    authPath = PATH_DIRECT;
+                    deliverSeed(receiver, mac);
+                    return;
+                }
+            } catch (AuthenticationRequiredException e) {
+                authSession.expire(keyID);
+            }
+        }
+
+        authPath = PATH_SCAN;
+        final Mac mac;
+        try {
+            mac = this.obtainMac();
+        } catch (AuthenticationRequiredException e) {
+            // time-bound key outside of its window: the scan unlocks the key itself, so
+            // authenticate without a crypto object and initialize the Mac afterwards
+            final int validitySeconds = keyValiditySeconds();
+            authenticate(null, new FingerprintAuthenticationDialogFragment.Callback() {
+                @Override
+                public void onSuccess() {
+                    if (authSession != null) {
+                        authSession.markAuthenticated(keyID, validitySeconds);
+                    }
+                    try {
+                        Mac unlocked = initCrypto();
+                        if (unlocked == null) {
+                            receiver.onError(-314, 0);
+                            return;
+                        }
+                        deliverSeed(receiver, unlocked);
+                    } catch (IOException e) {
+                        receiver.onError(-1, 0);
+                    }
+                }
+
+                @Override
+                public void onError(int errCode, int attempts) {
+                    receiver.onError(errCode, attempts);
+                }
+
+                @Override
+                public void onCancel() {
+                    receiver.onCancel();
+                }
+            });
+            return;
+        }
         if (mac == null) {
-            callback.onError(-314, 0);
+            receiver.onError(-314, 0);
             return;
         }
 
-        FingerprintAuthenticationDialogFragment mFragment = new FingerprintAuthenticationDialogFragment();
-        mFragment.setLocale(this.locale);
-        mFragment.setCallback(new FingerprintAuthenticationDialogFragment.Callback() {
+        authenticate(mac, new FingerprintAuthenticationDialogFragment.Callback() {
             @Override
             public void onSuccess() {
-                try {
-                    callback.onSuccess(byteArrayToHex(fetchSeed(mac)));
-                } catch (IOException e) {
-                    callback.onError(-1, 0);
-                }
+                deliverSeed(receiver, mac);
             }
 
             @Override
             public void onError(int errCode, int attempts) {
-                callback.onError(errCode, attempts);
+                receiver.onError(errCode, attempts);
             }
 
             @Override
             public void onCancel() {
-                callback.onCancel();
+                receiver.onCancel();
             }
         });
-        mFragment.setCryptoObject(new FingerprintManagerCompat.CryptoObject(mac));
-        mFragment.show(this.activity.getFragmentManager(), "FpAuthDialog");
-}
+    }
+
+    private void deliverSeed(SeedReceiver receiver, Mac mac) {
+        try {
+            byte[] seed = fetchSeed(mac);
+            if (seedCache != null) {
+                seedCache.put(keyID, seed);
+            }
+            receiver.onSeed(seed);
+        } catch (IOException e) {
+            receiver.onError(-1, 0);
+        }
+    }
+
+    private int keyValiditySeconds() {
+        return keyValiditySeconds(keyStoreHolder, keyID);
+    }
+
+    /**
+     * The key's authentication validity duration, or 0 if it needs a scan for every use or
+     * cannot be read.
+     */
+    public static int keyValiditySeconds(KeyStoreHolder keyStoreHolder, String keyID) {
+        try {
+            SecretKey key = (SecretKey) keyStoreHolder.get().getKey(keyID, null);
+            SecretKeyFactory factory = SecretKeyFactory.getInstance(key.getAlgorithm(), KeyStoreHolder.ANDROID_KEY_STORE);
+            KeyInfo keyInfo = (KeyInfo) factory.getKeySpec(key, KeyInfo.class);
+            return keyInfo.getUserAuthenticationValidityDurationSeconds();
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    private Mac obtainMac() throws IOException {
+        Mac prepared = preparedMacCache != null ? preparedMacCache.take(keyID) : null;
+        return prepared != null ? prepared : this.initCrypto();
+    }
+
+    private void authenticate(Mac mac, FingerprintAuthenticationDialogFragment.Callback callback) {
+        if (headless) {
+            authPath = PATH_HEADLESS;
+            authenticateHeadless(mac, callback);
+        } else {
+            showScanDialog(mac, callback);
+        }
+    }
 
-    public static class Locale {
-        public String titleText = "";
-        public String cancelText = "";
-        public String descText = "";
-        public String hintText = "";
-        public String notRecognizedText = "";
-        public String successText = "";
-        public String tooManyTries = "";
+    /**
+     * Runs the fingerprint authentication straight against FingerprintManagerCompat on the
+     * UI thread, with no fragment or layout involved.
+     */
+    private void authenticateHeadless(final Mac mac, final FingerprintAuthenticationDialogFragment.Callback callback) {
+        this.activity.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                if (headlessCancelled) {
+                    callback.onCancel();
+                    return;
+                }
+                final CancellationSignal signal = new CancellationSignal();
+                headlessSignal = signal;
+                headlessCallback = callback;
+                final long listeningSince = System.nanoTime();
+                fm.authenticate(mac != null ? new FingerprintManagerCompat.CryptoObject(mac) : null, 0 /* flags */,
+                        signal, new FingerprintManagerCompat.AuthenticationCallback() {
+                            private int attempts = 0;
+
+                            @Override
+                            public void onAuthenticationError(int errMsgId, CharSequence errString) {
+                                if (finishHeadless(signal)) {
+                                    if (eventListener != null) {
+                                        eventListener.onAuthenticationError(errMsgId, attempts);
+                                    }
+                                    callback.onError(errMsgId, attempts);
+                                }
+                            }
+
+                            @Override
+                            public void onAuthenticationHelp(int helpMsgId, CharSequence helpString) {
+                                if (eventListener != null) {
+                                    eventListener.onHelp(helpMsgId, helpString != null ? helpString.toString() : null);
+                                }
+                            }
+
+                            @Override
+                            public void onAuthenticationFailed() {
+                                attempts++;
+                                if (eventListener != null) {
+                                    eventListener.onFailed(attempts);
+                                }
+                            }
+
+                            @Override
+                            public void onAuthenticationSucceeded(FingerprintManagerCompat.AuthenticationResult result) {
+                                Metrics.record(Metrics.USER, System.nanoTime() - listeningSince);
+                                if (finishHeadless(signal)) {
+                                    if (eventListener != null) {
+                                        eventListener.onSucceeded();
+                                    }
+                                    callback.onSuccess();
+                                }
+                            }
+                        }, null);
+                if (eventListener != null) {
+                    eventListener.onStarted();
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns false if the headless scan was cancelled or already finished.
+     */
+    private boolean finishHeadless(CancellationSignal signal) {
+        if (headlessSignal != signal) {
+            return false;
+        }
+        headlessSignal = null;
+        headlessCallback = null;
+        return true;
+    }
+
+    private void showScanDialog(final Mac mac, final FingerprintAuthenticationDialogFragment.Callback fragmentCallback) {
+        this.activity.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                FingerprintAuthenticationDialogFragment mFragment = FingerprintAuthenticationDialogFragment.obtain();
+                mFragment.setLocale(locale);
+                mFragment.setAvailability(availability);
+                mFragment.setTiming(timing);
+                mFragment.setEventListener(eventListener);
+                mFragment.setCallback(fragmentCallback);
+                mFragment.setCryptoObject(mac != null ? new FingerprintManagerCompat.CryptoObject(mac) : null);
+                mFragment.show(activity.getFragmentManager(), "FpAuthDialog");
+            }
+        });
     }
 
     public interface Callback {
@@ -217,4 +670,51 @@ public class FingerprintScanner {
         void onError(int errCode, int attempts);
         void onCancel();
     }
+
+    /**
+     * Progress of a scan, see {@link #setEventListener}. Called on the UI thread.
+     */
+    public interface EventListener {
+        void onStarted();
+        void onHelp(int helpCode, String helpString);
+        void onFailed(int attempts);
+        void onAuthenticationError(int errCode, int attempts);
+        void onSucceeded();
+    }
+
+    /**
+     * Feedback delays of the scan dialog, see {@link FingerprintUiHelper#setTiming}.
+     */
+    public static class Timing {
+        public long successDelayMillis = FingerprintUiHelper.SUCCESS_DELAY_MILLIS;
+        public long errorDelayMillis = FingerprintUiHelper.ERROR_TIMEOUT_MILLIS;
+        public boolean fast = false;
+    }
+
+    private interface SeedReceiver {
+        void onSeed(byte[] seed) throws IOException;
+        void onError(int errCode, int attempts);
+        void onCancel();
+    }
+
+    /**
+     * Thrown when a key with an authentication validity duration is used outside its window.
+     */
+    static class AuthenticationRequiredException extends IOException {
+        AuthenticationRequiredException(Throwable cause) {
+            super("User authentication required", cause);
+        }
+    }
+
+    public interface BytesCallback {
+        void onSuccess(byte[] seed);
+        void onError(int errCode, int attempts);
+        void onCancel();
+    }
+
+    public interface SeedsCallback {
+        void onSuccess(Map<String, String> seeds);
+        void onError(int errCode, int attempts);
+        void onCancel();
+    }
 }
@@ -35,17 +35,53 @@ public class FingerprintUiHelper extends FingerprintManagerCompat.Authentication
 
     private final Context mContext;
     private final FingerprintManagerCompat mFingerprintManager;
+    private final AvailabilitySnapshot mAvailability;
     private final ImageView mIcon;
     private final TextView mErrorTextView;
     private final Callback mCallback;
+    private final ResourceIds mIds;
+    private final int mHintColor;
+    private final int mWarningColor;
+    private final int mSuccessColor;
+    private CharSequence mHintText;
+    private CharSequence mNotRecognizedText;
+    private CharSequence mSuccessText;
     private CancellationSignal mCancellationSignal;
     private int mAttempts = 0;
+    private long mSuccessDelayMillis = SUCCESS_DELAY_MILLIS;
+    private long mErrorDelayMillis = ERROR_TIMEOUT_MILLIS;
+    private boolean mFastMode = false;
+    private FingerprintScanner.EventListener mEventListener;
+    private long mListeningSince;
+    private long mMatchedAt;
 
     boolean mSelfCancelled;
-    private FingerprintScanner.Locale locale;
+    private DialogLocale locale;
 
-    public void setLocale(FingerprintScanner.Locale locale) {
+    public void setLocale(DialogLocale locale) {
         this.locale = locale;
+        if (locale != null) {
+            mHintText = locale.hintText;
+            mNotRecognizedText = locale.notRecognizedText;
+            mSuccessText = locale.successText;
+        }
+    }
+
+    /**
+     * Overrides how long the success and error feedback is shown before the callback fires.
+     * In fast mode {@link Callback#onAuthenticated} fires as soon as the fingerprint
+     * matches and the success feedback plays on independently.
+     */
+    public void setTiming(FingerprintScanner.Timing timing) {
+        if (timing != null) {
+            mSuccessDelayMillis = timing.successDelayMillis;
+            mErrorDelayMillis = timing.errorDelayMillis;
+            mFastMode = timing.fast;
+        }
+    }
+
+    public void setEventListener(FingerprintScanner.EventListener eventListener) {
+        mEventListener = eventListener;
     }
 
     /**
@@ -53,16 +89,16 @@ public class FingerprintUiHelper extends FingerprintManagerCompat.Authentication
      * holds its fields and takes other arguments in the {@link #build} method.
      */
     public static class FingerprintUiHelperBuilder {
-        private final FingerprintManagerCompat mFingerPrintManager;
+        private final AvailabilitySnapshot mAvailability;
         private final Context mContext;
 
-        public FingerprintUiHelperBuilder(Context context, FingerprintManagerCompat fingerprintManager) {
-            mFingerPrintManager = fingerprintManager;
+        public FingerprintUiHelperBuilder(Context context, AvailabilitySnapshot availability) {
+            mAvailability = availability;
             mContext = context;
         }
 
         public FingerprintUiHelper build(ImageView icon, TextView errorTextView, Callback callback) {
-            return new FingerprintUiHelper(mContext, mFingerPrintManager, icon, errorTextView,
+            return new FingerprintUiHelper(mContext, mAvailability, icon, errorTextView,
                     callback);
         }
     }
@@ -71,26 +107,40 @@ public class FingerprintUiHelper extends FingerprintManagerCompat.Authentication
      * Constructor for {@link FingerprintUiHelper}. This method is expected to be called from
      * only the {@link FingerprintUiHelperBuilder} class.
      */
-    private FingerprintUiHelper(Context context, FingerprintManagerCompat fingerprintManager,
+    private FingerprintUiHelper(Context context, AvailabilitySnapshot availability,
                                 ImageView icon, TextView errorTextView, Callback callback) {
-        mFingerprintManager = fingerprintManager;
+        mAvailability = availability;
+        mFingerprintManager = availability.getFingerprintManager();
         mIcon = icon;
         mErrorTextView = errorTextView;
         mCallback = callback;
         mContext = context;
+
+        // resolve everything the auth callbacks need up front, so they neither look up
+        // resources by name nor allocate
+        mIds = ResourceIds.get(context);
+        mHintColor = context.getResources().getColor(mIds.hintColor, null);
+        mWarningColor = context.getResources().getColor(mIds.warningColor, null);
+        mSuccessColor = context.getResources().getColor(mIds.successColor, null);
+        mHintText = context.getResources().getString(mIds.fingerprintHint);
+        mNotRecognizedText = context.getResources().getString(mIds.fingerprintNotRecognized);
+        mSuccessText = context.getResources().getString(mIds.fingerprintSuccess);
     }
 
+    /**
+     * Answered from the plugin's {@link AvailabilitySnapshot}, so starting to listen on the UI
+     * thread does not query the fingerprint service.
+     */
     public boolean isFingerprintAuthAvailable() {
-        return mFingerprintManager.isHardwareDetected()
-                && mFingerprintManager.hasEnrolledFingerprints();
+        return mAvailability.isAvailable();
     }
 
     public boolean isHardwareDetected() {
-        return mFingerprintManager.isHardwareDetected();
+        return mAvailability.isHardwareDetected();
     }
 
     public boolean hasEnrolledFingerprints() {
-        return mFingerprintManager.hasEnrolledFingerprints();
+        return mAvailability.hasEnrolledFingerprints();
     }
 
     public void startListening(FingerprintManagerCompat.CryptoObject cryptoObject) {
@@ -99,12 +149,14 @@ public class FingerprintUiHelper extends FingerprintManagerCompat.Authentication
         }
         mCancellationSignal = new CancellationSignal();
         mSelfCancelled = false;
+        mListeningSince = System.nanoTime();
         mFingerprintManager
                 .authenticate(cryptoObject, 0 /* flags */, mCancellationSignal, this, null);
+        if (mEventListener != null) {
+            mEventListener.onStarted();
+        }
 
-        int ic_fp_40px_id = mContext.getResources()
-                .getIdentifier("ic_fp_40px", "drawable", FingerprintScanner.packageName);
-        mIcon.setImageResource(ic_fp_40px_id);
+        mIcon.setImageResource(mIds.icFp40px);
     }
 
     public void stopListening() {
@@ -119,32 +171,51 @@ public class FingerprintUiHelper extends FingerprintManagerCompat.Authentication
     public void onAuthenticationError(int errMsgId, final CharSequence errString) {
         if (!mSelfCancelled) {
             showError(errMsgId, errString);
-            final int errMsgIdFinal = errMsgId;
-            mIcon.postDelayed(new Runnable() {
-                @Override
-                public void run() {
-                    mCallback.onError(errMsgIdFinal);
-                }
-            }, ERROR_TIMEOUT_MILLIS);
+            mErrorCode = errMsgId;
+            mIcon.postDelayed(mErrorRunnable, mErrorDelayMillis);
+            if (mEventListener != null) {
+                mEventListener.onAuthenticationError(errMsgId, mAttempts);
+            }
         }
     }
 
+    private int mErrorCode;
+
+    private final Runnable mErrorRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mCallback.onError(mErrorCode);
+        }
+    };
+
+    /**
+     * Stops listening and drops any pending UI updates, so the views can be reused by
+     * another dialog.
+     */
+    public void release() {
+        stopListening();
+        mIcon.removeCallbacks(mErrorRunnable);
+        mIcon.removeCallbacks(mAuthenticatedRunnable);
+        mErrorTextView.removeCallbacks(mResetErrorTextRunnable);
+        mErrorTextView.setTextColor(mHintColor);
+        mErrorTextView.setText(mHintText);
+        mIcon.setImageResource(mIds.icFp40px);
+    }
+
     @Override
     public void onAuthenticationHelp(int helpMsgId, CharSequence helpString) {
         showError(helpMsgId, helpString);
+        if (mEventListener != null) {
+            mEventListener.onHelp(helpMsgId, helpString != null ? helpString.toString() : null);
+        }
     }
 
     @Override
     public void onAuthenticationFailed() {
         mAttempts++;
-        int fingerprint_not_recognized_id = mContext.getResources()
-                .getIdentifier("fingerprint_not_recognized", "string",
-                        FingerprintScanner.packageName);
-        if (this.locale != null) {
-            showError(0, this.locale.notRecognizedText);
-        } else {
-            showError(0, mIcon.getResources().getString(
-                    fingerprint_not_recognized_id));
+        showError(0, mNotRecognizedText);
+        if (mEventListener != null) {
+            mEventListener.onFailed(mAttempts);
         }
     }
 
@@ -154,37 +225,34 @@ public class FingerprintUiHelper extends FingerprintManagerCompat.Authentication
 
     @Override
     public void onAuthenticationSucceeded(FingerprintManagerCompat.AuthenticationResult result) {
+        mMatchedAt = System.nanoTime();
+        Metrics.record(Metrics.USER, mMatchedAt - mListeningSince);
         mErrorTextView.removeCallbacks(mResetErrorTextRunnable);
-        int ic_fp_40px_id = mContext.getResources()
-                    .getIdentifier("ic_fp_40px", "drawable", FingerprintScanner.packageName);
-        mIcon.setImageResource(ic_fp_40px_id);
-
-
-        int success_color_id = mContext.getResources()
-                .getIdentifier("success_color", "color", FingerprintScanner.packageName);
-        mErrorTextView.setTextColor(
-                mErrorTextView.getResources().getColor(success_color_id, null));
-        int fingerprint_success_id = mContext.getResources()
-                .getIdentifier("fingerprint_success", "string", FingerprintScanner.packageName);
-        if (this.locale != null) {
-            mErrorTextView.setText(this.locale.successText);
+        mIcon.setImageResource(mIds.icFp40px);
+        mErrorTextView.setTextColor(mSuccessColor);
+        mErrorTextView.setText(mSuccessText);
+        if (mEventListener != null) {
+            mEventListener.onSucceeded();
+        }
+        if (mFastMode) {
+            Metrics.record(Metrics.FEEDBACK, System.nanoTime() - mMatchedAt);
+            mCallback.onAuthenticated();
         } else {
-            mErrorTextView.setText(
-                    mErrorTextView.getResources().getString(fingerprint_success_id));
+            mIcon.postDelayed(mAuthenticatedRunnable, mSuccessDelayMillis);
         }
-        mIcon.postDelayed(new Runnable() {
-            @Override
-            public void run() {
-                mCallback.onAuthenticated();
-            }
-        }, SUCCESS_DELAY_MILLIS);
     }
 
+    private final Runnable mAuthenticatedRunnable = new Runnable() {
+        @Override
+        public void run() {
+            Metrics.record(Metrics.FEEDBACK, System.nanoTime() - mMatchedAt);
+            mCallback.onAuthenticated();
+        }
+    };
+
     private void showError(int errCode, CharSequence error) {
-        int ic_fp_40px_id = mContext.getResources()
-            .getIdentifier("ic_fp_fail_40px", "drawable", FingerprintScanner.packageName);
-        mIcon.setImageResource(ic_fp_40px_id);
-        
+        mIcon.setImageResource(mIds.icFpFail40px);
+
         switch (errCode) {
             case 7: 
                 mErrorTextView.setText(locale.tooManyTries);
@@ -193,10 +261,7 @@ public class FingerprintUiHelper extends FingerprintManagerCompat.Authentication
                 mErrorTextView.setText(error);
         }
 
-        int warning_color_id = mContext.getResources()
-                .getIdentifier("warning_color", "color", FingerprintScanner.packageName);
-        mErrorTextView.setTextColor(
-                mErrorTextView.getResources().getColor(warning_color_id, null));
+        mErrorTextView.setTextColor(mWarningColor);
         mErrorTextView.removeCallbacks(mResetErrorTextRunnable);
         mErrorTextView.postDelayed(mResetErrorTextRunnable, ERROR_TIMEOUT_MILLIS);
     }
@@ -204,20 +269,9 @@ public class FingerprintUiHelper extends FingerprintManagerCompat.Authentication
     Runnable mResetErrorTextRunnable = new Runnable() {
         @Override
         public void run() {
-            int hint_color_id = mContext.getResources().getIdentifier("hint_color", "color", FingerprintScanner.packageName);
-             mErrorTextView.setTextColor(mErrorTextView.getResources().getColor(hint_color_id, null));
-
-            int fingerprint_hint_id = mContext.getResources()
-                    .getIdentifier("fingerprint_hint", "string", FingerprintScanner.packageName);
-            if (locale != null) {
-                mErrorTextView.setText(locale.hintText);
-            } else {
-                mErrorTextView.setText(
-                        mErrorTextView.getResources().getString(fingerprint_hint_id));
-            }
-            int ic_fp_40px_id = mContext.getResources()
-                    .getIdentifier("ic_fp_40px", "drawable", FingerprintScanner.packageName);
-            mIcon.setImageResource(ic_fp_40px_id);
+            mErrorTextView.setTextColor(mHintColor);
+            mErrorTextView.setText(mHintText);
+            mIcon.setImageResource(mIds.icFp40px);
         }
     };
 
@@ -0,0 +1,48 @@
+package com.cordova.plugin.android.fingerprintkey;
+
+/**
+ * Table driven hex encoding. Encoding fills a single char array sized up front, so the only
+ * allocation per call is the resulting String.
+ */
+public final class Hex {
+
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+    private Hex() {
+    }
+
+    public static String encode(byte[] bytes) {
+        char[] out = new char[bytes.length * 2];
+        for (int i = 0, j = 0; i < bytes.length; i++) {
+            int v = bytes[i] & 0xff;
+            out[j++] = DIGITS[v >>> 4];
+            out[j++] = DIGITS[v & 0x0f];
+        }
+        return new String(out);
+    }
+
+    public static byte[] decode(CharSequence hex) {
+        int length = hex.length();
+        if ((length & 1) != 0) {
+            throw new IllegalArgumentException("Odd number of hex digits");
+        }
+        byte[] out = new byte[length / 2];
+        for (int i = 0, j = 0; j < out.length; i += 2, j++) {
+            out[j] = (byte) ((digit(hex.charAt(i)) << 4) | digit(hex.charAt(i + 1)));
+        }
+        return out;
+    }
+
+    private static int digit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        throw new IllegalArgumentException("Invalid hex digit: " + c);
+    }
+}
@@ -0,0 +1,76 @@
+package com.cordova.plugin.android.fingerprintkey;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with power-of-two microsecond buckets. Recording is a few
+ * atomic increments and never allocates, so it can stay enabled in production.
+ */
+public class Histogram {
+
+    // bucket i holds durations in [2^i, 2^(i+1)) microseconds, the last one everything above
+    private static final int BUCKETS = 25;
+
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mSumNanos = new AtomicLong();
+    private final AtomicLong mMaxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            return;
+        }
+        long micros = nanos / 1000;
+        int bucket = micros == 0 ? 0 : 63 - Long.numberOfLeadingZeros(micros);
+        mBuckets.incrementAndGet(Math.min(bucket, BUCKETS - 1));
+        mCount.incrementAndGet();
+        mSumNanos.addAndGet(nanos);
+        long max = mMaxNanos.get();
+        while (nanos > max && !mMaxNanos.compareAndSet(max, nanos)) {
+            max = mMaxNanos.get();
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            mBuckets.set(i, 0);
+        }
+        mCount.set(0);
+        mSumNanos.set(0);
+        mMaxNanos.set(0);
+    }
+
+    /**
+     * Upper bound, in milliseconds, of the bucket holding the given percentile.
+     */
+    private double percentileMillis(long count, double percentile) {
+        long threshold = (long) Math.ceil(count * percentile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += mBuckets.get(i);
+            if (seen >= threshold) {
+                return (1L << (i + 1)) / 1000.0;
+            }
+        }
+        return mMaxNanos.get() / 1000000.0;
+    }
+
+    public JSONObject toJson() throws JSONException {
+        long count = mCount.get();
+        JSONObject json = new JSONObject();
+        json.put("count", count);
+        if (count == 0) {
+            return json;
+        }
+        json.put("avgMillis", mSumNanos.get() / count / 1000000.0);
+        json.put("maxMillis", mMaxNanos.get() / 1000000.0);
+        json.put("p50Millis", percentileMillis(count, 0.50));
+        json.put("p90Millis", percentileMillis(count, 0.90));
+        json.put("p99Millis", percentileMillis(count, 0.99));
+        return json;
+    }
+}
@@ -0,0 +1,62 @@
+package com.cordova.plugin.android.fingerprintkey;
+
+import java.io.IOException;
+import java.security.KeyStore;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The key aliases present in the key store, listed once and kept in memory. Generating or
+ * removing a key through {@link FingerprintScanner} invalidates the list.
+ */
+public class KeyRegistry {
+
+    private final KeyStoreHolder mKeyStoreHolder;
+    private volatile Set<String> mAliases;
+    // bumped by invalidate, so a listing that raced with a change is not kept
+    private volatile int mGeneration = 0;
+
+    KeyRegistry(KeyStoreHolder keyStoreHolder) {
+        mKeyStoreHolder = keyStoreHolder;
+    }
+
+    /**
+     * Returns an unmodifiable set of every alias in the key store.
+     */
+    public Set<String> aliases() throws IOException {
+        Set<String> aliases = mAliases;
+        if (aliases != null) {
+            return aliases;
+        }
+        int generation = mGeneration;
+        KeyStore keyStore = mKeyStoreHolder.get();
+        try {
+            HashSet<String> loaded = new HashSet<String>();
+            Enumeration<String> e = keyStore.aliases();
+            while (e.hasMoreElements()) {
+                loaded.add(e.nextElement());
+            }
+            aliases = Collections.unmodifiableSet(loaded);
+        } catch (Exception e) {
+            mKeyStoreHolder.invalidate();
+            throw new IOException("Failed to list keys", e);
+        }
+        synchronized (this) {
+            if (generation == mGeneration) {
+                mAliases = aliases;
+            }
+        }
+        return aliases;
+    }
+
+    public boolean contains(String keyId) throws IOException {
+        return aliases().contains(keyId);
+    }
+
+    public synchronized void invalidate() {
+        mGeneration++;
+        mAliases = null;
+    }
+}
@@ -0,0 +1,77 @@
+package com.cordova.plugin.android.fingerprintkey;
+
+import java.io.IOException;
+import java.security.KeyStore;
+
+/**
+ * Lazily loaded, shared {@link KeyStore}. Loading AndroidKeyStore is a binder round-trip to
+ * the keystore daemon, so the loaded instance is kept until a failure invalidates it.
+ */
+public class KeyStoreHolder {
+
+    public static final String ANDROID_KEY_STORE = "AndroidKeyStore";
+
+    /**
+     * Creates and loads the key store. Replaceable so the holder can run against a
+     * software key store outside of Android.
+     */
+    public interface Provider {
+        KeyStore load() throws Exception;
+    }
+
+    public static final Provider ANDROID_KEY_STORE_PROVIDER = new Provider() {
+        @Override
+        public KeyStore load() throws Exception {
+            KeyStore keyStore = KeyStore.getInstance(ANDROID_KEY_STORE);
+            keyStore.load(null);
+            return keyStore;
+        }
+    };
+
+    private final Provider mProvider;
+    private final KeyRegistry mKeys = new KeyRegistry(this);
+    private volatile KeyStore mKeyStore;
+
+    public KeyStoreHolder() {
+        this(ANDROID_KEY_STORE_PROVIDER);
+    }
+
+    public KeyStoreHolder(Provider provider) {
+        mProvider = provider;
+    }
+
+    public KeyStore get() throws IOException {
+        KeyStore keyStore = mKeyStore;
+        if (keyStore == null) {
+            synchronized (this) {
+                keyStore = mKeyStore;
+                if (keyStore == null) {
+                    try {
+                        long startedAt = System.nanoTime();
+                        keyStore = mProvider.load();
+                        Metrics.record(Metrics.KEYSTORE_LOAD, System.nanoTime() - startedAt);
+                    } catch (Exception e) {
+                        throw new IOException("Failed to load keystore", e);
+                    }
+                    mKeyStore = keyStore;
+                }
+            }
+        }
+        return keyStore;
+    }
+
+    /**
+     * The cached aliases of this key store.
+     */
+    public KeyRegistry keys() {
+        return mKeys;
+    }
+
+    /**
+     * Drops the loaded instance so the next {@link #get()} reloads it.
+     */
+    public void invalidate() {
+        mKeyStore = null;
+        mKeys.invalidate();
+    }
+}
@@ -0,0 +1,38 @@
+package com.cordova.plugin.android.fingerprintkey;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Locales registered once from JS and parsed up front, so scans can refer to them by id
+ * instead of sending and parsing the whole bundle on every call.
+ */
+public class LocaleRegistry {
+
+    private final ConcurrentHashMap<String, DialogLocale> mLocales =
+            new ConcurrentHashMap<String, DialogLocale>();
+
+    public void register(String localeId, JSONObject json) {
+        mLocales.put(localeId, DialogLocale.fromJson(json));
+    }
+
+    /**
+     * Returns the locale for the call's arguments: the registered "localeId", an inline
+     * "locale" bundle, or {@link DialogLocale#DEFAULT}.
+     */
+    public DialogLocale resolve(JSONObject args) throws JSONException {
+        if (args.has("localeId")) {
+            DialogLocale locale = mLocales.get(args.getString("localeId"));
+            if (locale == null) {
+                throw new JSONException("Unknown localeId: " + args.getString("localeId"));
+            }
+            return locale;
+        }
+        if (args.has("locale")) {
+            return DialogLocale.fromJson(args.getJSONObject("locale"));
+        }
+        return DialogLocale.DEFAULT;
+    }
+}
@@ -0,0 +1,92 @@
+package com.cordova.plugin.android.fingerprintkey;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+
+/**
+ * Lockout state per keyId, persisted so a lockout outlives the process. The deadline is
+ * kept both as elapsedRealtime, which is used while the device has not rebooted and is not
+ * affected by clock changes, and as wall clock time, which is used after a reboot. Either
+ * way the remaining time is clamped to the lock's duration, so a clock set back cannot
+ * stretch a lockout. Writes run on the UI thread and use
+ * {@link SharedPreferences.Editor#apply}, which writes to disk in the background.
+ */
+public class LockoutStore {
+
+    private static final String PREFS_NAME = "FingerprintKeyLockout";
+    private static final String DEADLINE_PREFIX = "deadline.";
+    private static final String ELAPSED_DEADLINE_PREFIX = "elapsedDeadline.";
+    private static final String DURATION_PREFIX = "duration.";
+    private static final String FAILURES_PREFIX = "failures.";
+
+    private final SharedPreferences mPrefs;
+
+    public LockoutStore(Context context) {
+        mPrefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Locks the key for the given time, unless it is already locked for longer.
+     */
+    public synchronized void lock(String keyId, long durationMillis) {
+        if (durationMillis <= remainingMillis(keyId)) {
+            return;
+        }
+        mPrefs.edit()
+                .putLong(DEADLINE_PREFIX + keyId, System.currentTimeMillis() + durationMillis)
+                .putLong(ELAPSED_DEADLINE_PREFIX + keyId, SystemClock.elapsedRealtime() + durationMillis)
+                .putLong(DURATION_PREFIX + keyId, durationMillis)
+                .apply();
+    }
+
+    /**
+     * Returns how long the key stays locked, or 0 if it is not locked.
+     */
+    public long remainingMillis(String keyId) {
+        long duration = mPrefs.getLong(DURATION_PREFIX + keyId, 0);
+        if (duration <= 0) {
+            return 0;
+        }
+        long elapsedDeadline = mPrefs.getLong(ELAPSED_DEADLINE_PREFIX + keyId, 0);
+        long now = SystemClock.elapsedRealtime();
+        long remaining;
+        if (elapsedDeadline - duration <= now) {
+            // locked since the last boot
+            remaining = elapsedDeadline - now;
+        } else {
+            remaining = mPrefs.getLong(DEADLINE_PREFIX + keyId, 0) - System.currentTimeMillis();
+        }
+        return Math.max(0, Math.min(remaining, duration));
+    }
+
+    public boolean isLocked(String keyId) {
+        return remainingMillis(keyId) > 0;
+    }
+
+    public synchronized int recordFailure(String keyId) {
+        int failures = mPrefs.getInt(FAILURES_PREFIX + keyId, 0) + 1;
+        mPrefs.edit().putInt(FAILURES_PREFIX + keyId, failures).apply();
+        return failures;
+    }
+
+    public int getFailures(String keyId) {
+        return mPrefs.getInt(FAILURES_PREFIX + keyId, 0);
+    }
+
+    /**
+     * Forgets the key's deadline and failures, e.g. after a successful scan.
+     */
+    public synchronized void clear(String keyId) {
+        if (!mPrefs.contains(DURATION_PREFIX + keyId) && !mPrefs.contains(DEADLINE_PREFIX + keyId)
+                && !mPrefs.contains(FAILURES_PREFIX + keyId)) {
+            return;
+        }
+        mPrefs.edit()
+                .remove(DEADLINE_PREFIX + keyId)
+                .remove(ELAPSED_DEADLINE_PREFIX + keyId)
+                .remove(DURATION_PREFIX + keyId)
+                .remove(FAILURES_PREFIX + keyId)
+                .apply();
+    }
+}
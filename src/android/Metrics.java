@@ -0,0 +1,64 @@
+package com.cordova.plugin.android.fingerprintkey;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Per-phase timings of fingerprint operations, from the bridge call to the delivered
+ * result. Durations are measured with {@link System#nanoTime} and aggregated in
+ * {@link Histogram}s; phases are recorded from whichever thread they finish on.
+ */
+final class Metrics {
+
+    // waiting in the crypto executor's queue
+    static final int QUEUE = 0;
+    // loading AndroidKeyStore
+    static final int KEYSTORE_LOAD = 1;
+    // getKey and Mac.init
+    static final int MAC_INIT = 2;
+    // dialog show() to its first frame
+    static final int DIALOG = 3;
+    // sensor listening to a matching fingerprint, the user's part
+    static final int USER = 4;
+    // matching fingerprint to the success callback, the feedback delay
+    static final int FEEDBACK = 5;
+    // computing the seed with the authorized Mac
+    static final int SEED = 6;
+    // handing the result to the bridge
+    static final int DELIVERY = 7;
+    // the whole action, from leaving the queue to its result
+    static final int REQUEST = 8;
+
+    private static final String[] NAMES = {
+            "queue", "keystoreLoad", "macInit", "dialog", "user", "feedback", "seed", "delivery", "request"
+    };
+
+    private static final Histogram[] HISTOGRAMS = new Histogram[NAMES.length];
+
+    static {
+        for (int i = 0; i < HISTOGRAMS.length; i++) {
+            HISTOGRAMS[i] = new Histogram();
+        }
+    }
+
+    private Metrics() {
+    }
+
+    static void record(int phase, long nanos) {
+        HISTOGRAMS[phase].record(nanos);
+    }
+
+    static void reset() {
+        for (Histogram histogram : HISTOGRAMS) {
+            histogram.reset();
+        }
+    }
+
+    static JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        for (int i = 0; i < HISTOGRAMS.length; i++) {
+            json.put(NAMES[i], HISTOGRAMS[i].toJson());
+        }
+        return json;
+    }
+}
@@ -0,0 +1,113 @@
+package com.cordova.plugin.android.fingerprintkey;
+
+import android.os.SystemClock;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.Mac;
+
+/**
+ * Initialized HMAC objects prepared ahead of a scan. Each entry can be taken once and
+ * expires after a short TTL, so a prepared Mac is never reused across authentications.
+ * Every Mac the cache drops without handing it out is reset, which aborts the keystore
+ * operation its init began instead of leaving it to be pruned.
+ */
+public class PreparedMacCache {
+
+    static final long DEFAULT_TTL_MILLIS = 30000;
+
+    private static class Entry {
+        final Mac mac;
+        final long expiresAt;
+
+        Entry(Mac mac, long expiresAt) {
+            this.mac = mac;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final HashMap<String, Entry> mEntries = new HashMap<String, Entry>();
+    private final long mTtlMillis;
+    private final AtomicLong mHits = new AtomicLong();
+    private final AtomicLong mMisses = new AtomicLong();
+    private final AtomicLong mExpired = new AtomicLong();
+
+    public PreparedMacCache() {
+        this(DEFAULT_TTL_MILLIS);
+    }
+
+    public PreparedMacCache(long ttlMillis) {
+        mTtlMillis = ttlMillis;
+    }
+
+    public void put(String keyId, Mac mac) {
+        Entry replaced;
+        synchronized (this) {
+            replaced = mEntries.put(keyId, new Entry(mac, SystemClock.elapsedRealtime() + mTtlMillis));
+        }
+        discard(replaced);
+    }
+
+    /**
+     * Removes and returns the prepared Mac for the key, or null if there is none or it expired.
+     */
+    public Mac take(String keyId) {
+        Entry entry;
+        synchronized (this) {
+            entry = mEntries.remove(keyId);
+        }
+        if (entry == null) {
+            mMisses.incrementAndGet();
+            return null;
+        }
+        if (entry.expiresAt < SystemClock.elapsedRealtime()) {
+            mExpired.incrementAndGet();
+            mMisses.incrementAndGet();
+            discard(entry);
+            return null;
+        }
+        mHits.incrementAndGet();
+        return entry.mac;
+    }
+
+    public void remove(String keyId) {
+        Entry entry;
+        synchronized (this) {
+            entry = mEntries.remove(keyId);
+        }
+        discard(entry);
+    }
+
+    public void clear() {
+        ArrayList<Entry> entries;
+        synchronized (this) {
+            entries = new ArrayList<Entry>(mEntries.values());
+            mEntries.clear();
+        }
+        for (Entry entry : entries) {
+            discard(entry);
+        }
+    }
+
+    private static void discard(Entry entry) {
+        if (entry != null) {
+            entry.mac.reset();
+        }
+    }
+
+    public JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        synchronized (this) {
+            json.put("size", mEntries.size());
+        }
+        json.put("hits", mHits.get());
+        json.put("misses", mMisses.get());
+        json.put("expired", mExpired.get());
+        return json;
+    }
+}
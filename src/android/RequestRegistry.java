@@ -0,0 +1,75 @@
+package com.cordova.plugin.android.fingerprintkey;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-flight plugin requests keyed by callback id. Every request gets its own
+ * {@link CallbackContext}, so concurrent calls from JS never receive each other's results,
+ * and each request is completed at most once.
+ */
+public class RequestRegistry {
+
+    private final ConcurrentHashMap<String, CallbackContext> mPending =
+            new ConcurrentHashMap<String, CallbackContext>();
+
+    public void register(CallbackContext callbackContext) {
+        mPending.put(callbackContext.getCallbackId(), callbackContext);
+    }
+
+    public boolean isPending(String callbackId) {
+        return mPending.containsKey(callbackId);
+    }
+
+    /**
+     * Sends an intermediate result while keeping the request open.
+     */
+    public boolean update(String callbackId, PluginResult result) {
+        CallbackContext callbackContext = mPending.get(callbackId);
+        if (callbackContext == null) {
+            return false;
+        }
+        result.setKeepCallback(true);
+        // finish sends under the same lock, so an update never arrives after the final result
+        synchronized (callbackContext) {
+            if (mPending.get(callbackId) != callbackContext) {
+                return false;
+            }
+            callbackContext.sendPluginResult(result);
+        }
+        return true;
+    }
+
+    /**
+     * Sends the final result for the request and forgets it. Returns false if the request
+     * was already completed.
+     */
+    public boolean finish(String callbackId, PluginResult result) {
+        CallbackContext callbackContext = mPending.remove(callbackId);
+        if (callbackContext == null) {
+            return false;
+        }
+        result.setKeepCallback(false);
+        long startedAt = System.nanoTime();
+        synchronized (callbackContext) {
+            callbackContext.sendPluginResult(result);
+        }
+        Metrics.record(Metrics.DELIVERY, System.nanoTime() - startedAt);
+        return true;
+    }
+
+    public int size() {
+        return mPending.size();
+    }
+
+    /**
+     * Fails every pending request, e.g. when the WebView navigates away.
+     */
+    public void cancelAll(String message) {
+        for (String callbackId : mPending.keySet()) {
+            finish(callbackId, new PluginResult(PluginResult.Status.ERROR, message));
+        }
+    }
+}
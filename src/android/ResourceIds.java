@@ -0,0 +1,101 @@
+package com.cordova.plugin.android.fingerprintkey;
+
+import android.content.Context;
+import android.content.res.Resources;
+
+/**
+ * Resource identifiers of the plugin's layouts, views, drawables, colors and strings. The
+ * plugin's resources are merged into the host app, so they can only be found by name through
+ * {@link Resources#getIdentifier}; that lookup is done once per package here instead of on
+ * every UI event.
+ */
+final class ResourceIds {
+
+    private static volatile ResourceIds sInstance;
+
+    final String packageName;
+
+    // layouts
+    final int fingerprintDialogContainer;
+    final int fingerprintLockDialogContainer;
+
+    // views
+    final int fingerprintTitle;
+    final int fingerprintContainer;
+    final int fingerprintDescription;
+    final int fingerprintIcon;
+    final int fingerprintStatus;
+    final int cancelButton;
+    final int fingerprintLockContainer;
+    final int fingerprintLockDescription;
+    final int fingerprintLockIcon;
+    final int fingerprintLockStatus;
+    final int lockCancelButton;
+
+    // drawables
+    final int icFp40px;
+    final int icFpFail40px;
+
+    // colors
+    final int hintColor;
+    final int warningColor;
+    final int successColor;
+
+    // strings
+    final int cancel;
+    final int fingerprintAuthDialogTitle;
+    final int fingerprintAuthLockDialogTitle;
+    final int fingerprintDescriptionText;
+    final int fingerprintHint;
+    final int fingerprintNotRecognized;
+    final int fingerprintSuccess;
+
+    private ResourceIds(Resources res, String packageName) {
+        this.packageName = packageName;
+
+        fingerprintDialogContainer = res.getIdentifier("fingerprint_dialog_container", "layout", packageName);
+        fingerprintLockDialogContainer = res.getIdentifier("fingerprint_lock_dialog_container", "layout", packageName);
+
+        fingerprintTitle = res.getIdentifier("fingerprint_title", "id", packageName);
+        fingerprintContainer = res.getIdentifier("fingerprint_container", "id", packageName);
+        fingerprintDescription = res.getIdentifier("fingerprint_description", "id", packageName);
+        fingerprintIcon = res.getIdentifier("fingerprint_icon", "id", packageName);
+        fingerprintStatus = res.getIdentifier("fingerprint_status", "id", packageName);
+        cancelButton = res.getIdentifier("cancel_button", "id", packageName);
+        fingerprintLockContainer = res.getIdentifier("fingerprint_lock_container", "id", packageName);
+        fingerprintLockDescription = res.getIdentifier("fingerprint_lock_description", "id", packageName);
+        fingerprintLockIcon = res.getIdentifier("fingerprint_lock_icon", "id", packageName);
+        fingerprintLockStatus = res.getIdentifier("fingerprint_lock_status", "id", packageName);
+        lockCancelButton = res.getIdentifier("lock_cancel_button", "id", packageName);
+
+        icFp40px = res.getIdentifier("ic_fp_40px", "drawable", packageName);
+        icFpFail40px = res.getIdentifier("ic_fp_fail_40px", "drawable", packageName);
+
+        hintColor = res.getIdentifier("hint_color", "color", packageName);
+        warningColor = res.getIdentifier("warning_color", "color", packageName);
+        successColor = res.getIdentifier("success_color", "color", packageName);
+
+        cancel = res.getIdentifier("cancel", "string", packageName);
+        fingerprintAuthDialogTitle = res.getIdentifier("fingerprint_auth_dialog_title", "string", packageName);
+        fingerprintAuthLockDialogTitle = res.getIdentifier("fingerprint_auth_lock_dialog_title", "string", packageName);
+        fingerprintDescriptionText = res.getIdentifier("fingerprint_description", "string", packageName);
+        fingerprintHint = res.getIdentifier("fingerprint_hint", "string", packageName);
+        fingerprintNotRecognized = res.getIdentifier("fingerprint_not_recognized", "string", packageName);
+        fingerprintSuccess = res.getIdentifier("fingerprint_success", "string", packageName);
+    }
+
+    static ResourceIds get(Context context) {
+        String packageName = context.getApplicationContext().getPackageName();
+        ResourceIds ids = sInstance;
+        if (ids == null || !ids.packageName.equals(packageName)) {
+            synchronized (ResourceIds.class) {
+                ids = sInstance;
+                if (ids == null || !ids.packageName.equals(packageName)) {
+                    ids = new ResourceIds(context.getApplicationContext().getResources(), packageName);
+                    sInstance = ids;
+                }
+            }
+        }
+        return ids;
+    }
+}
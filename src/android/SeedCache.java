@@ -0,0 +1,122 @@
+package com.cordova.plugin.android.fingerprintkey;
+
+import android.os.SystemClock;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Optional, bounded cache of derived seeds keyed by keyId. Seeds are kept as byte arrays so
+ * they can be wiped when they expire, are evicted, or the app goes to the background.
+ * Disabled until {@link #configure} is called with a positive TTL and size.
+ */
+public class SeedCache {
+
+    private static class Entry {
+        final byte[] seed;
+        final long expiresAt;
+
+        Entry(byte[] seed, long expiresAt) {
+            this.seed = seed;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    // access order, so the eldest entry is the least recently used one
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private long mTtlMillis = 0;
+    private int mMaxEntries = 0;
+    private long mHits = 0;
+    private long mMisses = 0;
+    private long mEvictions = 0;
+
+    public synchronized void configure(long ttlMillis, int maxEntries) {
+        mTtlMillis = ttlMillis;
+        mMaxEntries = maxEntries;
+        clear();
+    }
+
+    public synchronized boolean isEnabled() {
+        return mTtlMillis > 0 && mMaxEntries > 0;
+    }
+
+    /**
+     * Returns a copy of the cached seed, or null on a miss. The caller owns the copy.
+     */
+    public synchronized byte[] get(String keyId) {
+        if (!isEnabled()) {
+            return null;
+        }
+        Entry entry = mEntries.get(keyId);
+        if (entry == null) {
+            mMisses++;
+            return null;
+        }
+        if (entry.expiresAt < SystemClock.elapsedRealtime()) {
+            mEntries.remove(keyId);
+            wipe(entry);
+            mMisses++;
+            return null;
+        }
+        mHits++;
+        return entry.seed.clone();
+    }
+
+    /**
+     * Stores a copy of the seed; the caller may wipe its own array afterwards.
+     */
+    public synchronized void put(String keyId, byte[] seed) {
+        if (!isEnabled()) {
+            return;
+        }
+        Entry previous = mEntries.put(keyId, new Entry(seed.clone(), SystemClock.elapsedRealtime() + mTtlMillis));
+        if (previous != null) {
+            Arrays.fill(previous.seed, (byte) 0);
+        }
+        Iterator<Map.Entry<String, Entry>> it = mEntries.entrySet().iterator();
+        while (mEntries.size() > mMaxEntries && it.hasNext()) {
+            Entry eldest = it.next().getValue();
+            it.remove();
+            wipe(eldest);
+        }
+    }
+
+    public synchronized void remove(String keyId) {
+        Entry entry = mEntries.remove(keyId);
+        if (entry != null) {
+            wipe(entry);
+        }
+    }
+
+    /**
+     * Wipes and drops every entry.
+     */
+    public synchronized void clear() {
+        for (Entry entry : mEntries.values()) {
+            wipe(entry);
+        }
+        mEntries.clear();
+    }
+
+    private void wipe(Entry entry) {
+        Arrays.fill(entry.seed, (byte) 0);
+        mEvictions++;
+    }
+
+    public synchronized JSONObject toJson() throws JSONException {
+        long lookups = mHits + mMisses;
+        JSONObject json = new JSONObject();
+        json.put("enabled", isEnabled());
+        json.put("size", mEntries.size());
+        json.put("hits", mHits);
+        json.put("misses", mMisses);
+        json.put("hitRate", lookups == 0 ? 0 : (double) mHits / lookups);
+        json.put("evictions", mEvictions);
+        return json;
+    }
+}
@@ -0,0 +1,42 @@
+package com.cordova.plugin.android.fingerprintkey;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Derives per-label seeds from the seed a single fingerprint authentication produced. A
+ * fingerprint authorizes a single keystore operation, so the labels are HMAC'ed in software
+ * under the master seed rather than under the keystore key itself.
+ */
+final class SeedDerivation {
+
+    static final String ALGORITHM = "HmacSHA256";
+
+    private SeedDerivation() {
+    }
+
+    /**
+     * Returns the seed of every label, in the order of the labels. The master seed is wiped
+     * before returning.
+     */
+    static Map<String, byte[]> derive(byte[] master, String[] labels) throws IOException {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(master, ALGORITHM));
+            Map<String, byte[]> seeds = new LinkedHashMap<String, byte[]>();
+            for (String label : labels) {
+                seeds.put(label, mac.doFinal(label.getBytes("UTF-8")));
+            }
+            return seeds;
+        } catch (Exception e) {
+            throw new IOException("Failed to derive seeds", e);
+        } finally {
+            Arrays.fill(master, (byte) 0);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.cordova.plugin.android.fingerprintkey;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size ring buffer of authentication events for support diagnostics. Entries are
+ * kept in preallocated atomic arrays and slots are claimed with an atomic counter, so
+ * writing neither allocates nor takes a lock and is safe on the UI thread. Key ids are
+ * only stored as their hash.
+ */
+final class TraceLog {
+
+    static final int SCAN_STARTED = 0;
+    static final int HELP = 1;
+    static final int FAILED = 2;
+    static final int AUTH_ERROR = 3;
+    static final int SUCCEEDED = 4;
+    static final int RESULT_OK = 5;
+    static final int RESULT_ERROR = 6;
+    static final int RESULT_CANCELLED = 7;
+    static final int KEY_INVALIDATED = 8;
+    static final int KEYSTORE_ERROR = 9;
+    // a result or event of a request could not be built
+    static final int CALLBACK_ERROR = 10;
+
+    private static final String[] NAMES = {
+            "started", "help", "failed", "autherror", "succeeded",
+            "ok", "error", "cancelled", "invalidated", "keystoreerror", "callbackerror"
+    };
+
+    // a power of two, so a sequence number maps to its slot with a mask
+    private static final int CAPACITY = 256;
+
+    private static final AtomicLong sNext = new AtomicLong();
+    // sequence number written to each slot, -1 while the slot is being written. The fields
+    // are atomic arrays too, so their stores cannot be reordered around the stamp's and a
+    // reader that sees the same stamp before and after reading them has a whole entry
+    private static final AtomicLongArray sStamps = new AtomicLongArray(CAPACITY);
+    private static final AtomicLongArray sTimes = new AtomicLongArray(CAPACITY);
+    private static final AtomicIntegerArray sOps = new AtomicIntegerArray(CAPACITY);
+    private static final AtomicIntegerArray sKeyHashes = new AtomicIntegerArray(CAPACITY);
+    private static final AtomicIntegerArray sErrors = new AtomicIntegerArray(CAPACITY);
+    private static final AtomicIntegerArray sAttempts = new AtomicIntegerArray(CAPACITY);
+    private static final AtomicLongArray sDurations = new AtomicLongArray(CAPACITY);
+
+    static {
+        clear();
+    }
+
+    private TraceLog() {
+    }
+
+    static void write(int op, String keyId, int errCode, int attempts, long durationNanos) {
+        long seq = sNext.getAndIncrement();
+        int slot = (int) (seq & (CAPACITY - 1));
+        sStamps.set(slot, -1);
+        sTimes.set(slot, System.currentTimeMillis());
+        sOps.set(slot, op);
+        sKeyHashes.set(slot, keyId != null ? keyId.hashCode() : 0);
+        sErrors.set(slot, errCode);
+        sAttempts.set(slot, attempts);
+        sDurations.set(slot, durationNanos);
+        sStamps.set(slot, seq);
+    }
+
+    static void clear() {
+        for (int i = 0; i < CAPACITY; i++) {
+            sStamps.set(i, -1);
+        }
+    }
+
+    /**
+     * Returns the buffered entries, oldest first, as one compact JSON object per line.
+     */
+    static String export() {
+        long next = sNext.get();
+        StringBuilder out = new StringBuilder();
+        for (long seq = Math.max(0, next - CAPACITY); seq < next; seq++) {
+            int slot = (int) (seq & (CAPACITY - 1));
+            if (sStamps.get(slot) != seq) {
+                continue;
+            }
+            long time = sTimes.get(slot);
+            int op = sOps.get(slot);
+            int keyHash = sKeyHashes.get(slot);
+            int errCode = sErrors.get(slot);
+            int attempts = sAttempts.get(slot);
+            long duration = sDurations.get(slot);
+            // skip the entry if a writer reused the slot while it was read
+            if (sStamps.get(slot) != seq) {
+                continue;
+            }
+            out.append("{\"seq\":").append(seq)
+                    .append(",\"time\":").append(time)
+                    .append(",\"op\":\"").append(NAMES[op])
+                    .append("\",\"key\":").append(keyHash)
+                    .append(",\"error\":").append(errCode)
+                    .append(",\"attempts\":").append(attempts)
+                    .append(",\"durationMillis\":").append(duration / 1000000.0)
+                    .append("}\n");
+        }
+        return out.toString();
+    }
+}
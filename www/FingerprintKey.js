@@ -3,6 +3,23 @@
         return CoinStack.Util.bitcoin().HDNode.fromSeedHex(seed, CoinStack.Util.bitcoin().networks.bitcoin).privKey.toWIF()
     }
 
+    // results requested with format "binary" arrive as an ArrayBuffer: a status byte,
+    // a big-endian int32 error code, a big-endian uint16 attempt count, then the raw seed
+    var binaryStatus = ["ok", "error", "cancelled"];
+
+    function decodeBinaryResult(buffer) {
+        var view = new DataView(buffer);
+        var res = {
+            status: binaryStatus[view.getUint8(0)],
+            error: view.getInt32(1),
+            attempts: view.getUint16(5)
+        };
+        if (res.status == "ok") {
+            res.seed = new Uint8Array(buffer, 7);
+        }
+        return res;
+    }
+
     function FingerprintKey() {}
 
     var ua = navigator.userAgent;
@@ -319,10 +336,19 @@
                 });
                 return;
             }
+            var startedAt = Date.now();
             cordova.exec(
                 function (res) {
+                    if (res instanceof ArrayBuffer) {
+                        res = decodeBinaryResult(res);
+                    }
+                    // bridge round trip in ms, res.elapsed is the native part
+                    res.roundtrip = Date.now() - startedAt;
                     if (res.status == "ok") {
-                        res.key = createKeyFromHexSeed(res.key);
+                        // binary results carry the raw seed in res.seed
+                        if (!res.seed) {
+                            res.key = createKeyFromHexSeed(res.key);
+                        }
                     } else if (res.status == "error") {
                         res.cause = res.error;
                         if (res.error == 7) {
@@ -331,6 +357,10 @@
                             res.error = errors.KEY_NOT_FOUND;
                         } else {
                             res.error = errors.FINGERPRINT_NOT_AVAILABLE;
+                            if (res.availability) {
+                                // -315, tell what is missing the way the iOS branch does
+                                res.cause = res.availability.isHardwareDetected ? "Enrolled fingerprint not available" : "HW not available";
+                            }
                         }
                     }
                     successCallback(res);
@@ -352,10 +382,18 @@
                 });
                 return;
             }
+            var startedAt = Date.now();
             cordova.exec(
                 function (res) {
+                    if (res instanceof ArrayBuffer) {
+                        res = decodeBinaryResult(res);
+                    }
+                    res.roundtrip = Date.now() - startedAt;
                     if (res.status == "ok") {
-                        res.key = createKeyFromHexSeed(res.key);
+                        // base64 and binary seeds are handed to the caller as they are
+                        if (params.encoding != "base64" && !res.seed) {
+                            res.key = createKeyFromHexSeed(res.key);
+                        }
                     } else if (res.status == "error") {
                         res.cause = res.error;
                         if (res.error == 7) {
@@ -364,6 +402,10 @@
                             res.error = errors.KEY_NOT_FOUND;
                         } else {
                             res.error = errors.FINGERPRINT_NOT_AVAILABLE;
+                            if (res.availability) {
+                                // -315, tell what is missing the way the iOS branch does
+                                res.cause = res.availability.isHardwareDetected ? "Enrolled fingerprint not available" : "HW not available";
+                            }
                         }
                     }
                     successCallback(res);
@@ -377,6 +419,190 @@
             );
         };
 
+        FingerprintKey.prototype.fetchKeys = function (params, successCallback, errorCallback) {
+            if (!checkPlugin()) {
+                errorCallback({
+                    status: "error",
+                    error: errors.PLUGIN_NOT_LOADED
+                });
+                return;
+            }
+            var startedAt = Date.now();
+            cordova.exec(
+                function (res) {
+                    res.roundtrip = Date.now() - startedAt;
+                    if (res.status == "ok") {
+                        if (params.encoding != "base64") {
+                            for (var label in res.keys) {
+                                res.keys[label] = createKeyFromHexSeed(res.keys[label]);
+                            }
+                        }
+                    } else if (res.status == "error") {
+                        res.cause = res.error;
+                        if (res.error == 7) {
+                            res.error = errors.TOO_MANY_TRIES;
+                        } else if (res.error == -314) {
+                            res.error = errors.KEY_NOT_FOUND;
+                        } else {
+                            res.error = errors.FINGERPRINT_NOT_AVAILABLE;
+                            if (res.availability) {
+                                // -315, tell what is missing the way the iOS branch does
+                                res.cause = res.availability.isHardwareDetected ? "Enrolled fingerprint not available" : "HW not available";
+                            }
+                        }
+                    }
+                    successCallback(res);
+                },
+                errorCallback,
+                "FingerprintKey", // Java Class
+                "fetchkeys", // action
+                [ // Array of arguments to pass to the Java class
+                    params
+                ]
+            );
+        };
+
+        FingerprintKey.prototype.initKeys = function (params, successCallback, errorCallback) {
+            if (!checkPlugin()) {
+                errorCallback({
+                    status: "error",
+                    error: errors.PLUGIN_NOT_LOADED
+                });
+                return;
+            }
+            cordova.exec(
+                successCallback,
+                errorCallback,
+                "FingerprintKey", // Java Class
+                "initkeys", // action
+                [ // Array of arguments to pass to the Java class
+                    params
+                ]
+            );
+        };
+
+        FingerprintKey.prototype.removeKeys = function (params, successCallback, errorCallback) {
+            if (!checkPlugin()) {
+                errorCallback({
+                    status: "error",
+                    error: errors.PLUGIN_NOT_LOADED
+                });
+                return;
+            }
+            cordova.exec(
+                successCallback,
+                errorCallback,
+                "FingerprintKey", // Java Class
+                "removekeys", // action
+                [ // Array of arguments to pass to the Java class
+                    params
+                ]
+            );
+        };
+
+        FingerprintKey.prototype.scanKeyHealth = function (params, successCallback, errorCallback) {
+            if (!checkPlugin()) {
+                errorCallback({
+                    status: "error",
+                    error: errors.PLUGIN_NOT_LOADED
+                });
+                return;
+            }
+            cordova.exec(
+                successCallback,
+                errorCallback,
+                "FingerprintKey", // Java Class
+                "scankeyhealth", // action
+                [ // Array of arguments to pass to the Java class
+                    params
+                ]
+            );
+        };
+
+        FingerprintKey.prototype.reprovision = function (params, successCallback, errorCallback) {
+            if (!checkPlugin()) {
+                errorCallback({
+                    status: "error",
+                    error: errors.PLUGIN_NOT_LOADED
+                });
+                return;
+            }
+            cordova.exec(
+                successCallback,
+                errorCallback,
+                "FingerprintKey", // Java Class
+                "reprovision", // action
+                [ // Array of arguments to pass to the Java class
+                    params
+                ]
+            );
+        };
+
+        FingerprintKey.prototype.prepareKey = function (params, successCallback, errorCallback) {
+            if (!checkPlugin()) {
+                errorCallback({
+                    status: "error",
+                    error: errors.PLUGIN_NOT_LOADED
+                });
+                return;
+            }
+            cordova.exec(
+                function (res) {
+                    if (res.status == "error") {
+                        res.cause = res.error;
+                        if (res.error == -314) {
+                            res.error = errors.KEY_NOT_FOUND;
+                        } else {
+                            res.error = errors.FINGERPRINT_NOT_AVAILABLE;
+                        }
+                    }
+                    successCallback(res);
+                },
+                errorCallback,
+                "FingerprintKey", // Java Class
+                "prepare", // action
+                [ // Array of arguments to pass to the Java class
+                    params
+                ]
+            );
+        };
+
+        FingerprintKey.prototype.listKeys = function (successCallback, errorCallback) {
+            if (!checkPlugin()) {
+                errorCallback({
+                    status: "error",
+                    error: errors.PLUGIN_NOT_LOADED
+                });
+                return;
+            }
+            cordova.exec(
+                successCallback,
+                errorCallback,
+                "FingerprintKey", // Java Class
+                "listkeys", // action
+                [{}]
+            );
+        };
+
+        FingerprintKey.prototype.hasKey = function (params, successCallback, errorCallback) {
+            if (!checkPlugin()) {
+                errorCallback({
+                    status: "error",
+                    error: errors.PLUGIN_NOT_LOADED
+                });
+                return;
+            }
+            cordova.exec(
+                successCallback,
+                errorCallback,
+                "FingerprintKey", // Java Class
+                "haskey", // action
+                [ // Array of arguments to pass to the Java class
+                    params
+                ]
+            );
+        };
+
         FingerprintKey.prototype.isAvailable = function (successCallback, errorCallback) {
             if (!checkPlugin()) {
                 errorCallback({
@@ -393,6 +619,113 @@
                 [{}]
             );
         };
+
+        FingerprintKey.prototype.subscribeEvents = function (eventCallback, errorCallback) {
+            cordova.exec(
+                eventCallback,
+                errorCallback,
+                "FingerprintKey", // Java Class
+                "events", // action
+                [{}]
+            );
+        };
+
+        FingerprintKey.prototype.unsubscribeEvents = function (successCallback, errorCallback) {
+            cordova.exec(
+                successCallback,
+                errorCallback,
+                "FingerprintKey", // Java Class
+                "closeevents", // action
+                [{}]
+            );
+        };
+
+        FingerprintKey.prototype.cancel = function (params, successCallback, errorCallback) {
+            if (typeof params == "function") {
+                // cancel(successCallback, errorCallback) cancels every headless scan
+                errorCallback = successCallback;
+                successCallback = params;
+                params = {};
+            }
+            cordova.exec(
+                successCallback,
+                errorCallback,
+                "FingerprintKey", // Java Class
+                "cancel", // action
+                [ // Array of arguments to pass to the Java class
+                    params || {}
+                ]
+            );
+        };
+
+        FingerprintKey.prototype.warmUp = function (successCallback, errorCallback) {
+            cordova.exec(
+                successCallback,
+                errorCallback,
+                "FingerprintKey", // Java Class
+                "warmup", // action
+                [{}]
+            );
+        };
+
+        FingerprintKey.prototype.registerLocale = function (localeId, locale, successCallback, errorCallback) {
+            cordova.exec(
+                successCallback,
+                errorCallback,
+                "FingerprintKey", // Java Class
+                "registerlocale", // action
+                [{
+                    localeId: localeId,
+                    locale: locale
+                }]
+            );
+        };
+
+        FingerprintKey.prototype.configureCache = function (params, successCallback, errorCallback) {
+            cordova.exec(
+                successCallback,
+                errorCallback,
+                "FingerprintKey", // Java Class
+                "configurecache", // action
+                [ // Array of arguments to pass to the Java class
+                    params
+                ]
+            );
+        };
+
+        FingerprintKey.prototype.getMetrics = function (params, successCallback, errorCallback) {
+            cordova.exec(
+                successCallback,
+                errorCallback,
+                "FingerprintKey", // Java Class
+                "getmetrics", // action
+                [ // Array of arguments to pass to the Java class
+                    params
+                ]
+            );
+        };
+
+        FingerprintKey.prototype.exportTrace = function (params, successCallback, errorCallback) {
+            cordova.exec(
+                successCallback,
+                errorCallback,
+                "FingerprintKey", // Java Class
+                "exporttrace", // action
+                [ // Array of arguments to pass to the Java class
+                    params
+                ]
+            );
+        };
+
+        FingerprintKey.prototype.getStats = function (successCallback, errorCallback) {
+            cordova.exec(
+                successCallback,
+                errorCallback,
+                "FingerprintKey", // Java Class
+                "stats", // action
+                [{}]
+            );
+        };
     }
 
     FingerprintKey = new FingerprintKey();